@@ -1,16 +1,73 @@
 
+import java.util.ArrayList;
+import java.util.List;
+
+import compiler.BlockProfile;
 import compiler.CompileEnv;
 
 public class InterpreterManualMain {
 
+	// usage: InterpreterManualMain [-O<level>] [-passes=<pass>,...] [-verify] [-time] [-stats] [-ngrams=<n>]
+	//                             [-profile-in=<file>] [-profile-out=<file>] [-lazy] file
 	public static void main(String[] args) throws Exception {
 		System.out.println("BEGIN");
-        String program = compiler.InputReader.fileToString(args[0]);
+		String file = null;
+		boolean time = false;
+		boolean stats = false;
+		int ngrams = 0;
+		String profileOut = null;
+		List<String> options = new ArrayList<String>();
+		for (String arg : args) {
+			if (arg.startsWith("-")) {
+				options.add(arg);
+			} else {
+				file = arg;
+			}
+		}
+        String program = compiler.InputReader.fileToString(file);
 		CompileEnv compiler = new CompileEnv(program, false);
+		for (String option : options) {
+			if (option.startsWith("-O")) {
+				compiler.setOptLevel(Integer.parseInt(option.substring(2)));
+			} else if (option.startsWith("-passes=")) {
+				String passes = option.substring("-passes=".length());
+				compiler.setPipeline(passes.isEmpty() ? List.of() : List.of(passes.split(",")));
+			} else if (option.equals("-verify")) {
+				compiler.setVerify(true);
+			} else if (option.equals("-time")) {
+				time = true;
+			} else if (option.equals("-stats")) {
+				stats = true;
+			} else if (option.startsWith("-ngrams=")) {
+				ngrams = Integer.parseInt(option.substring("-ngrams=".length()));
+				compiler.setNgramLength(ngrams);
+			} else if (option.startsWith("-profile-in=")) {
+				compiler.setProfile(BlockProfile.load(option.substring("-profile-in=".length())));
+			} else if (option.startsWith("-profile-out=")) {
+				profileOut = option.substring("-profile-out=".length());
+				compiler.setRecordProfile(true);
+			} else if (option.equals("-lazy")) {
+				compiler.setLazyFunctions(true);
+			} else {
+				throw new Exception("Unknown option " + option);
+			}
+		}
 		compiler.compile();
 		//compiler.dumpAst(System.out);
 		compiler.dump(System.out);
 		compiler.execute(System.out);
+		if (time) {
+			compiler.dumpTimings(System.out);
+		}
+		if (stats) {
+			compiler.dumpStatistics(System.out);
+		}
+		if (ngrams > 0) {
+			compiler.dumpNgrams(System.out, 20);
+		}
+		if (profileOut != null) {
+			compiler.getRecordedProfile().save(profileOut);
+		}
 		System.out.println("END");
 	}
 
@@ -0,0 +1,134 @@
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class InterpreterTest implements test.TestCaseIntf {
+
+	// "// CHECK <counter> <op> <counter or number>" in a program asserts a
+	// statistic of the -O2, profile guided or lazy run, op is ==, < or >
+	private static final Pattern CHECK = Pattern.compile("//\\s*CHECK\\s+(\\S+)\\s*(==|<|>)\\s*(\\S+)");
+
+	public String executeTest(String input) throws Exception {
+		// every optimization level has to produce the same output
+		String result = execute(input, 0);
+		compiler.CompileEnv optimized = null;
+		for (int optLevel = 1; optLevel <= compiler.CompileEnv.MAX_OPT_LEVEL; optLevel++) {
+			optimized = compile(input, optLevel);
+			String optResult = run(optimized);
+			if (!optResult.equals(result)) {
+				return String.format("-O%d differs:\n%s", optLevel, optResult);
+			}
+		}
+		// so has the layout for the profile of a run, passed on like a saved one
+		compiler.CompileEnv profiled = compile(input, compiler.CompileEnv.MAX_OPT_LEVEL);
+		profiled.setRecordProfile(true);
+		run(profiled);
+		ByteArrayOutputStream profile = new ByteArrayOutputStream();
+		profiled.getRecordedProfile().write(profile);
+		String profileText = new String(profile.toByteArray(), "UTF-8");
+		compiler.CompileEnv guided = new compiler.CompileEnv(input, false);
+		guided.setOptLevel(compiler.CompileEnv.MAX_OPT_LEVEL);
+		guided.setProfile(compiler.BlockProfile.read(profileText));
+		guided.setVerify(true);
+		guided.compile();
+		String guidedResult = run(guided);
+		if (!guidedResult.equals(result)) {
+			return String.format("profile guided layout differs:\n%s", guidedResult);
+		}
+		// but not the profile of another program or of renamed blocks
+		if (profiled.getRecordedProfile().size() > 1 && !rejectsProfile("{ PRINT 1; }", profileText)) {
+			return "profile accepted for a different program\n";
+		}
+		if (!rejectsProfile(input, profileText.replaceFirst("(?m)^(BLOCK 0 [0-9]+ ).*$", "$1renamed"))) {
+			return "profile accepted for renamed blocks\n";
+		}
+		// and compiling the functions on their first call
+		compiler.CompileEnv lazy = new compiler.CompileEnv(input, false);
+		lazy.setOptLevel(compiler.CompileEnv.MAX_OPT_LEVEL);
+		lazy.setLazyFunctions(true);
+		lazy.setVerify(true);
+		lazy.compile();
+		String lazyResult = run(lazy);
+		if (!lazyResult.equals(result)) {
+			return String.format("lazy functions differ:\n%s", lazyResult);
+		}
+		String failedCheck = checkStatistics(input,
+				List.of(optimized.getStatistics(), guided.getStatistics(), lazy.getStatistics()));
+		if (failedCheck != null) {
+			return failedCheck;
+		}
+		return result;
+	}
+
+	/**
+	 * true if compiling program refuses the profile
+	 */
+	private boolean rejectsProfile(String program, String profile) throws Exception {
+		compiler.CompileEnv compileEnv = new compiler.CompileEnv(program, false);
+		compileEnv.setOptLevel(compiler.CompileEnv.MAX_OPT_LEVEL);
+		compileEnv.setProfile(compiler.BlockProfile.read(profile));
+		try {
+			compileEnv.compile();
+		} catch (Exception e) {
+			if (e.getMessage() != null && e.getMessage().contains("recorded for a different program")) {
+				return true;
+			}
+			throw e;
+		}
+		return false;
+	}
+
+	/**
+	 * the first CHECK of the program that does not hold, null if all do
+	 */
+	private String checkStatistics(String input, List<Map<String, Integer>> runs) {
+		Matcher check = CHECK.matcher(input);
+		while (check.find()) {
+			Integer lhs = counter(check.group(1), runs);
+			Integer rhs = check.group(3).matches("-?[0-9]+") ? Integer.valueOf(check.group(3))
+					: counter(check.group(3), runs);
+			if (lhs == null || rhs == null) {
+				return String.format("unknown counter in %s\n", check.group());
+			}
+			String op = check.group(2);
+			boolean holds = op.equals("==") ? lhs.intValue() == rhs.intValue()
+					: op.equals("<") ? lhs < rhs : lhs > rhs;
+			if (!holds) {
+				return String.format("%s failed: %d %s %d\n", check.group(), lhs, op, rhs);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * a counter of the first run that reports it
+	 */
+	private static Integer counter(String name, List<Map<String, Integer>> runs) {
+		for (Map<String, Integer> statistics : runs) {
+			if (statistics.containsKey(name)) {
+				return statistics.get(name);
+			}
+		}
+		return null;
+	}
+
+	private String execute(String input, int optLevel) throws Exception {
+		return run(compile(input, optLevel));
+	}
+
+	private compiler.CompileEnv compile(String input, int optLevel) throws Exception {
+        compiler.CompileEnv compileEnv = new compiler.CompileEnv(input, false);
+        compileEnv.setOptLevel(optLevel);
+        compileEnv.setVerify(true);
+        compileEnv.compile();
+        return compileEnv;
+	}
+
+	private String run(compiler.CompileEnv compileEnv) throws Exception {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        compileEnv.execute(outStream);
+		return new String(outStream.toByteArray(), "UTF-8");
+	}
+}
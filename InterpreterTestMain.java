@@ -0,0 +1,11 @@
+
+public class InterpreterTestMain {
+
+	public static void main(String[] args) throws Exception {
+		System.out.println("BEGIN");
+		test.TestSuiteIntf test = new test.TestSuite(compiler.InputReader.fileToString(args[0]), new InterpreterTest());
+		test.testRun();
+		System.out.println("END");
+	}
+
+}
@@ -0,0 +1,147 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders the blocks of every function by a profile so that a block is
+ * followed by the successor it continues in most often. Starting with
+ * single blocks, chains are joined along the edges in the order of their
+ * execution counts. The chain of the entry block comes first, the other
+ * chains follow by their hottest block and blocks that never ran keep
+ * their order at the end. The linker drops jumps to the next block, so
+ * the hot path of a function runs without them.
+ */
+public class BlockLayout {
+    private List<InstrBlock> m_blockList;
+    private Map<InstrBlock, FunctionInfo> m_functions;
+    private BlockProfile m_profile;
+    // position of every block in the list the profile refers to
+    private HashMap<InstrBlock, Integer> m_ids;
+
+    // executed edges between adjacent blocks before and after the layout
+    public int m_fallThroughsBefore;
+    public int m_fallThroughs;
+
+    private static class Edge {
+        InstrBlock m_from;
+        InstrBlock m_to;
+        long m_count;
+    }
+
+    public BlockLayout(List<InstrBlock> blockList, Map<InstrBlock, FunctionInfo> functions, BlockProfile profile) {
+        m_blockList = blockList;
+        m_functions = functions;
+        m_profile = profile;
+        m_ids = new HashMap<InstrBlock, Integer>();
+        for (int i = 0; i < blockList.size(); i++) {
+            m_ids.put(blockList.get(i), i);
+        }
+    }
+
+    public void run() {
+        m_fallThroughsBefore = countFallThroughs();
+        LinkedHashSet<InstrBlock> layout = new LinkedHashSet<InstrBlock>();
+        for (InstrBlock root : m_functions.keySet()) {
+            for (InstrBlock block : layoutFunction(root)) {
+                layout.add(block);
+            }
+        }
+        // blocks no function reaches stay behind all others
+        layout.addAll(m_blockList);
+        m_blockList.clear();
+        m_blockList.addAll(layout);
+        m_fallThroughs = countFallThroughs();
+    }
+
+    private int countFallThroughs() {
+        int fallThroughs = 0;
+        for (int i = 0; i + 1 < m_blockList.size(); i++) {
+            InstrBlock block = m_blockList.get(i);
+            InstrBlock next = m_blockList.get(i + 1);
+            if (block.getSuccessors().contains(next) && m_profile.getEdgeCount(id(block), id(next)) > 0) {
+                fallThroughs++;
+            }
+        }
+        return fallThroughs;
+    }
+
+    private int id(InstrBlock block) {
+        return m_ids.get(block);
+    }
+
+    private long count(InstrBlock block) {
+        return m_profile.getCount(id(block));
+    }
+
+    private List<InstrBlock> layoutFunction(InstrBlock root) {
+        FlowGraph graph = new FlowGraph(List.of(root));
+        ArrayList<InstrBlock> blocks = new ArrayList<InstrBlock>();
+        for (InstrBlock block : m_blockList) {
+            if (graph.contains(block)) {
+                blocks.add(block);
+            }
+        }
+
+        // executed edges, the hottest first
+        ArrayList<Edge> edges = new ArrayList<Edge>();
+        for (InstrBlock block : blocks) {
+            for (InstrBlock successor : new LinkedHashSet<InstrBlock>(block.getSuccessors())) {
+                Edge edge = new Edge();
+                edge.m_from = block;
+                edge.m_to = successor;
+                edge.m_count = m_profile.getEdgeCount(id(block), id(successor));
+                if (edge.m_count > 0) {
+                    edges.add(edge);
+                }
+            }
+        }
+        edges.sort((a, b) -> Long.compare(b.m_count, a.m_count));
+
+        // join a chain ending in from with a chain starting in to
+        HashMap<InstrBlock, ArrayList<InstrBlock>> chains = new HashMap<InstrBlock, ArrayList<InstrBlock>>();
+        for (InstrBlock block : blocks) {
+            ArrayList<InstrBlock> chain = new ArrayList<InstrBlock>();
+            chain.add(block);
+            chains.put(block, chain);
+        }
+        for (Edge edge : edges) {
+            ArrayList<InstrBlock> head = chains.get(edge.m_from);
+            ArrayList<InstrBlock> tail = chains.get(edge.m_to);
+            if (head == tail || head.get(head.size() - 1) != edge.m_from || tail.get(0) != edge.m_to
+                    || edge.m_to == root) {
+                continue;
+            }
+            head.addAll(tail);
+            for (InstrBlock block : tail) {
+                chains.put(block, head);
+            }
+        }
+
+        // entry chain first, then by the hottest block, stable for equal counts
+        ArrayList<ArrayList<InstrBlock>> order = new ArrayList<ArrayList<InstrBlock>>();
+        HashMap<InstrBlock, Long> heat = new HashMap<InstrBlock, Long>();
+        for (InstrBlock block : blocks) {
+            ArrayList<InstrBlock> chain = chains.get(block);
+            InstrBlock first = chain.get(0);
+            if (!heat.containsKey(first)) {
+                heat.put(first, 0L);
+                if (first != root) {
+                    order.add(chain);
+                }
+            }
+            heat.put(first, Math.max(heat.get(first), count(block)));
+        }
+        order.sort((a, b) -> Long.compare(heat.get(b.get(0)), heat.get(a.get(0))));
+        order.add(0, chains.get(root));
+
+        ArrayList<InstrBlock> layout = new ArrayList<InstrBlock>();
+        for (ArrayList<InstrBlock> chain : order) {
+            layout.addAll(chain);
+        }
+        return layout;
+    }
+}
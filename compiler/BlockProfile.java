@@ -0,0 +1,179 @@
+package compiler;
+
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Execution counts of the blocks of a program and of the edges between
+ * them, recorded by an instrumented run. Blocks are identified by their
+ * position in the block list before the layout pass, so a profile fits
+ * every compilation of the same program with the same pipeline.
+ */
+public class BlockProfile {
+    private ArrayList<String> m_names;
+    private long[] m_counts;
+    // per block the number of times each successor was entered from it
+    private ArrayList<TreeMap<Integer, Long>> m_edges;
+    // block starting at each address of the linked program, -1 inside of blocks
+    private int[] m_blockAt;
+    // block containing each address
+    private int[] m_blockOf;
+    // true at the addresses of jumps within a function
+    private boolean[] m_transfers;
+
+    public BlockProfile(List<InstrBlock> blocks) {
+        m_names = new ArrayList<String>();
+        for (InstrBlock block : blocks) {
+            m_names.add(block.getName());
+        }
+        m_counts = new long[blocks.size()];
+        m_edges = new ArrayList<TreeMap<Integer, Long>>();
+        for (int i = 0; i < blocks.size(); i++) {
+            m_edges.add(new TreeMap<Integer, Long>());
+        }
+    }
+
+    /**
+     * prepare recording a run of the linked program
+     */
+    void attach(List<InstrBlock> blocks, InstrIntf[] code) {
+        m_blockAt = new int[code.length];
+        m_blockOf = new int[code.length];
+        m_transfers = new boolean[code.length];
+        Arrays.fill(m_blockAt, -1);
+        for (int i = 0; i < blocks.size(); i++) {
+            int address = blocks.get(i).getAddress();
+            if (address >= 0 && address < code.length) {
+                m_blockAt[address] = i;
+            }
+        }
+        int block = -1;
+        for (int address = 0; address < code.length; address++) {
+            block = m_blockAt[address] >= 0 ? m_blockAt[address] : block;
+            m_blockOf[address] = block;
+            // returns and tail calls leave the function
+            m_transfers[address] = code[address].isTerminator() && !(code[address] instanceof Instr.ReturnInstr)
+                    && !(code[address] instanceof Instr.TailCallInstr);
+        }
+    }
+
+    /**
+     * the instruction at from was executed and the program continues at to
+     */
+    void record(int from, int to) {
+        // functions compiled while running have no blocks in the profile
+        if (to < 0 || to >= m_blockAt.length || m_blockAt[to] < 0) {
+            return;
+        }
+        int block = m_blockAt[to];
+        m_counts[block]++;
+        // the start of the program and calls enter a block without an edge
+        if (from >= 0 && from < m_blockAt.length && (m_transfers[from] || to == from + 1)) {
+            m_edges.get(m_blockOf[from]).merge(block, 1L, Long::sum);
+        }
+    }
+
+    public int size() {
+        return m_names.size();
+    }
+
+    public long getCount(int block) {
+        return m_counts[block];
+    }
+
+    public long getEdgeCount(int from, int to) {
+        return m_edges.get(from).getOrDefault(to, 0L);
+    }
+
+    /**
+     * share of the executions of block from that continued in block to
+     */
+    public double getRatio(int from, int to) {
+        return m_counts[from] == 0 ? 0.0 : (double) getEdgeCount(from, to) / m_counts[from];
+    }
+
+    /**
+     * block names without the numbers codegen counts up per compiler run
+     */
+    private static String kind(String name) {
+        return name.replaceAll("[0-9]+", "#");
+    }
+
+    /**
+     * true if the profile was recorded for these blocks
+     */
+    public boolean matches(List<InstrBlock> blocks) {
+        if (blocks.size() != m_names.size()) {
+            return false;
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            if (!kind(blocks.get(i).getName()).equals(kind(m_names.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void write(OutputStream outStream) throws Exception {
+        OutputStreamWriter os = new OutputStreamWriter(outStream, "UTF-8");
+        for (int i = 0; i < m_names.size(); i++) {
+            os.write(String.format("BLOCK %d %d %s\n", i, m_counts[i], m_names.get(i)));
+        }
+        for (int i = 0; i < m_names.size(); i++) {
+            for (Map.Entry<Integer, Long> edge : m_edges.get(i).entrySet()) {
+                os.write(String.format("EDGE %d %d %d\n", i, edge.getKey(), edge.getValue()));
+            }
+        }
+        os.flush();
+    }
+
+    public static BlockProfile read(String input) throws Exception {
+        ArrayList<String> names = new ArrayList<String>();
+        ArrayList<Long> counts = new ArrayList<Long>();
+        ArrayList<long[]> edges = new ArrayList<long[]>();
+        for (String line : input.split("\r?\n")) {
+            String[] fields = line.trim().split(" ", 4);
+            if (fields[0].isEmpty()) {
+                continue;
+            }
+            if (fields[0].equals("BLOCK") && fields.length == 4 && Integer.parseInt(fields[1]) == names.size()) {
+                counts.add(Long.parseLong(fields[2]));
+                names.add(fields[3]);
+            } else if (fields[0].equals("EDGE") && fields.length == 4) {
+                edges.add(new long[] {Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3])});
+            } else {
+                throw new Exception("Invalid profile line: " + line);
+            }
+        }
+        BlockProfile profile = new BlockProfile(new ArrayList<InstrBlock>());
+        profile.m_names = names;
+        profile.m_counts = new long[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            profile.m_counts[i] = counts.get(i);
+            profile.m_edges.add(new TreeMap<Integer, Long>());
+        }
+        for (long[] edge : edges) {
+            if (edge[0] < 0 || edge[0] >= names.size() || edge[1] < 0 || edge[1] >= names.size()) {
+                throw new Exception(String.format("Invalid profile edge %d -> %d", edge[0], edge[1]));
+            }
+            profile.m_edges.get((int) edge[0]).put((int) edge[1], edge[2]);
+        }
+        return profile;
+    }
+
+    public void save(String file) throws Exception {
+        try (FileOutputStream outStream = new FileOutputStream(file)) {
+            write(outStream);
+        }
+    }
+
+    public static BlockProfile load(String file) throws Exception {
+        return read(InputReader.fileToString(file));
+    }
+}
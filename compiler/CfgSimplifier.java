@@ -0,0 +1,167 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Simplifies the control flow graph after codegen:
+ * jumps to blocks that only jump on are redirected to the final target,
+ * blocks that are only reached by an unconditional jump from a single
+ * predecessor are appended to that predecessor and blocks that are not
+ * reachable from the program entry or any function entry are removed.
+ */
+public class CfgSimplifier {
+    private List<InstrBlock> m_blockList;
+    // blocks entered from outside of the graph, i.e. program and function entries
+    private HashSet<InstrBlock> m_roots;
+
+    public int m_threadedJumps;
+    public int m_removedJumps;
+    public int m_removedBlocks;
+    public int m_removedInstrs;
+
+    public CfgSimplifier(List<InstrBlock> blockList, List<InstrBlock> roots) {
+        m_blockList = blockList;
+        m_roots = new HashSet<InstrBlock>(roots);
+    }
+
+    public void run() {
+        // code behind a BREAK or RETURN would hide the real terminator
+        for (InstrBlock block : m_blockList) {
+            m_removedInstrs += block.removeDeadTail();
+        }
+        boolean changed = true;
+        while (changed) {
+            threadJumps();
+            removeUnreachable();
+            changed = mergeBlocks();
+        }
+    }
+
+    /**
+     * follow chains of blocks that consist of a single jump
+     */
+    private InstrBlock finalTarget(InstrBlock target) {
+        HashSet<InstrBlock> visited = new HashSet<InstrBlock>();
+        while (target.size() == 1 && visited.add(target)) {
+            InstrIntf instr = target.getLastInstr();
+            InstrBlock next;
+            if (instr instanceof Instr.JumpInstr) {
+                next = ((Instr.JumpInstr) instr).m_target;
+            } else if (instr instanceof Instr.BreakInstr) {
+                next = ((Instr.BreakInstr) instr).m_target;
+            } else {
+                break;
+            }
+            if (next == target) {
+                break;
+            }
+            target = next;
+        }
+        return target;
+    }
+
+    private InstrBlock thread(InstrBlock target) {
+        InstrBlock result = finalTarget(target);
+        if (result != target) {
+            m_threadedJumps++;
+        }
+        return result;
+    }
+
+    private void threadJumps() {
+        for (InstrBlock block : m_blockList) {
+            InstrIntf last = block.getLastInstr();
+            if (last instanceof Instr.JumpInstr) {
+                Instr.JumpInstr jump = (Instr.JumpInstr) last;
+                jump.m_target = thread(jump.m_target);
+            } else if (last instanceof Instr.BreakInstr) {
+                Instr.BreakInstr jump = (Instr.BreakInstr) last;
+                jump.m_target = thread(jump.m_target);
+            } else if (last instanceof Instr.JumpCondInstr) {
+                Instr.JumpCondInstr jump = (Instr.JumpCondInstr) last;
+                jump.m_targetTrue = thread(jump.m_targetTrue);
+                jump.m_targetFalse = thread(jump.m_targetFalse);
+                if (jump.m_targetTrue == jump.m_targetFalse) {
+                    // the condition has been computed already, only the branch goes away
+                    block.replaceLastInstr(new Instr.JumpInstr(jump.m_targetTrue));
+                    m_removedJumps++;
+                }
+            } else if (last instanceof Instr.CompareJumpInstr) {
+                Instr.CompareJumpInstr jump = (Instr.CompareJumpInstr) last;
+                jump.m_targetTrue = thread(jump.m_targetTrue);
+                jump.m_targetFalse = thread(jump.m_targetFalse);
+                if (jump.m_targetTrue == jump.m_targetFalse) {
+                    block.replaceLastInstr(new Instr.JumpInstr(jump.m_targetTrue));
+                    m_removedJumps++;
+                }
+            } else if (last instanceof Instr.CountDownInstr) {
+                Instr.CountDownInstr loop = (Instr.CountDownInstr) last;
+                loop.m_body = thread(loop.m_body);
+                loop.m_exit = thread(loop.m_exit);
+            } else if (last instanceof Instr.JumpTableInstr) {
+                Instr.JumpTableInstr table = (Instr.JumpTableInstr) last;
+                for (int i = 0; i < table.m_targets.length; i++) {
+                    table.m_targets[i] = thread(table.m_targets[i]);
+                }
+                table.m_default = thread(table.m_default);
+            }
+        }
+    }
+
+    private void removeUnreachable() {
+        HashSet<InstrBlock> reachable = new HashSet<InstrBlock>();
+        ArrayList<InstrBlock> workList = new ArrayList<InstrBlock>(m_roots);
+        while (!workList.isEmpty()) {
+            InstrBlock block = workList.remove(workList.size() - 1);
+            if (reachable.add(block)) {
+                workList.addAll(block.getSuccessors());
+            }
+        }
+        int size = m_blockList.size();
+        m_blockList.removeIf(block -> !reachable.contains(block));
+        m_removedBlocks += size - m_blockList.size();
+    }
+
+    /**
+     * append blocks to their only predecessor if that one jumps there unconditionally
+     */
+    private boolean mergeBlocks() {
+        HashMap<InstrBlock, Integer> predecessors = new HashMap<InstrBlock, Integer>();
+        for (InstrBlock block : m_blockList) {
+            for (InstrBlock successor : block.getSuccessors()) {
+                predecessors.merge(successor, 1, Integer::sum);
+            }
+        }
+        HashSet<InstrBlock> merged = new HashSet<InstrBlock>();
+        for (InstrBlock block : m_blockList) {
+            if (merged.contains(block)) {
+                continue;
+            }
+            while (true) {
+                InstrIntf last = block.getLastInstr();
+                InstrBlock target;
+                if (last instanceof Instr.JumpInstr) {
+                    target = ((Instr.JumpInstr) last).m_target;
+                } else if (last instanceof Instr.BreakInstr) {
+                    target = ((Instr.BreakInstr) last).m_target;
+                } else {
+                    break;
+                }
+                if (target == block || m_roots.contains(target) || merged.contains(target)
+                        || predecessors.get(target) != 1) {
+                    break;
+                }
+                block.removeLastInstr();
+                block.append(target);
+                merged.add(target);
+                m_removedJumps++;
+            }
+        }
+        m_blockList.removeAll(merged);
+        m_removedBlocks += merged.size();
+        return !merged.isEmpty();
+    }
+}
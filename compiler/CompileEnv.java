@@ -3,10 +3,38 @@ package compiler;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.Stack;
 
 public class CompileEnv implements CompileEnvIntf {
+    public static final int DEFAULT_MAX_CALL_DEPTH = 10000;
+    public static final int MAX_OPT_LEVEL = 2;
+    public static final int DEFAULT_OPT_LEVEL = 1;
+    // passes run at each optimization level
+    private static final List<List<String>> OPT_PIPELINES = List.of(
+            List.of(),
+            List.of("inline", "constfold", "prune", "idiom", "ifconvert", "cfg", "peephole", "gvn", "licm",
+                    "fuse", "regalloc", "layout"),
+            List.of("promote", "inline", "constfold", "specialize", "prune", "idiom", "unswitch", "ifconvert",
+                    "unroll", "cfg", "ssa", "peephole", "gvn", "unssa", "cfg", "licm", "fuse", "regalloc", "layout"));
+    // maximum number of AST nodes in the returned expression of an inlined function
+    public static final int DEFAULT_INLINE_THRESHOLD = 16;
+    // iterations per round of a partially unrolled loop
+    public static final int DEFAULT_UNROLL_FACTOR = 4;
+    // maximum number of AST nodes in the unrolled iterations of a loop
+    public static final int DEFAULT_UNROLL_MAX_NODES = 64;
+    // maximum number of AST nodes in a loop that is generated twice by unswitching
+    public static final int DEFAULT_UNSWITCH_MAX_NODES = 64;
+    // maximum number of AST nodes in each value an IF converted into ?: selects
+    public static final int DEFAULT_IF_CONVERT_MAX_NODES = 8;
+    // maximum number of copies of a function specialised for constant arguments
+    public static final int DEFAULT_SPECIALIZE_MAX_CLONES = 4;
+
     private SymbolTable m_symbolTable;
     private FunctionTable m_functionTable;
     private Lexer m_lexer;
@@ -18,6 +46,35 @@ public class CompileEnv implements CompileEnvIntf {
     private final boolean m_trace;
     private int m_nextBlockId = 0;
     private Stack<InstrBlock> loopStack;
+    private FunctionInfo m_currentFunction;
+    // frame layout of the code outside of any function
+    private FunctionInfo m_mainFunction;
+    private InstrIntf[] m_code;
+    private int m_maxCallDepth = DEFAULT_MAX_CALL_DEPTH;
+    // 0 compiles the AST as written, higher levels enable optimization passes
+    private int m_optLevel = DEFAULT_OPT_LEVEL;
+    private int m_inlineThreshold = DEFAULT_INLINE_THRESHOLD;
+    private int m_unrollFactor = DEFAULT_UNROLL_FACTOR;
+    private int m_unrollMaxNodes = DEFAULT_UNROLL_MAX_NODES;
+    private int m_unswitchMaxNodes = DEFAULT_UNSWITCH_MAX_NODES;
+    private int m_ifConvertMaxNodes = DEFAULT_IF_CONVERT_MAX_NODES;
+    private int m_specializeMaxClones = DEFAULT_SPECIALIZE_MAX_CLONES;
+    private EnumSet<PeepholeOptimizer.Rule> m_peepholeRules = EnumSet.allOf(PeepholeOptimizer.Rule.class);
+    private EnumSet<InstructionFuser.Rule> m_fusionRules = EnumSet.allOf(InstructionFuser.Rule.class);
+    // length of the executed instruction sequences that are counted, 0 counts none
+    private int m_ngramLength;
+    private NgramProfile m_ngrams;
+    // profile the block layout follows, null keeps the order of codegen
+    private BlockProfile m_profile;
+    // blocks in the order a profile refers to them, the order before the layout pass
+    private ArrayList<InstrBlock> m_profileBlocks;
+    private boolean m_recordProfile;
+    // parse and compile function bodies on their first call
+    private boolean m_lazyFunctions;
+    private BlockProfile m_recordedProfile;
+    // counters reported by the optimization passes
+    private LinkedHashMap<String, Integer> m_statistics;
+    private PassManager m_passManager;
 
 
     // cool kids would use a dedicated compile env config class for that...
@@ -25,11 +82,37 @@ public class CompileEnv implements CompileEnvIntf {
         m_trace = trace;
         m_symbolTable = new SymbolTable();
         m_functionTable = new FunctionTable();
+        m_mainFunction = new FunctionInfo("main", new ArrayList<String>());
+        m_currentFunction = m_mainFunction;
         m_lexer = new Lexer();
         m_lexer.init(input);
         m_parser = new Parser(this, m_lexer);
         m_blockList = new ArrayList<InstrBlock>();
         loopStack = new Stack<InstrBlock>();
+        m_statistics = new LinkedHashMap<String, Integer>();
+        m_passManager = new PassManager();
+        m_passManager.register("promote", PassManager.Kind.AST, this::promoteGlobals);
+        m_passManager.register("inline", PassManager.Kind.AST, this::inlineFunctions);
+        m_passManager.register("constfold", PassManager.Kind.AST, this::foldConstants);
+        // the copies inline the functions the originals inline, pruning may drop those
+        m_passManager.register("specialize", PassManager.Kind.AST, this::specializeFunctions);
+        m_passManager.register("prune", PassManager.Kind.AST, this::removeDeadDefinitions);
+        m_passManager.register("idiom", PassManager.Kind.AST, this::replaceLoopIdioms);
+        m_passManager.register("unswitch", PassManager.Kind.AST, this::unswitchLoops);
+        m_passManager.register("ifconvert", PassManager.Kind.AST, this::convertIfs);
+        m_passManager.register("unroll", PassManager.Kind.AST, this::unrollLoops);
+        m_passManager.register("cfg", PassManager.Kind.NON_SSA, this::simplifyCfg);
+        m_passManager.register("ssa", PassManager.Kind.ENTER_SSA, this::buildSsa);
+        m_passManager.register("peephole", PassManager.Kind.IR, this::optimizePeephole);
+        m_passManager.register("gvn", PassManager.Kind.IR, this::numberValues);
+        m_passManager.register("unssa", PassManager.Kind.LEAVE_SSA, this::destructSsa);
+        // the preheaders would need phis of their own
+        m_passManager.register("licm", PassManager.Kind.NON_SSA, this::hoistLoopInvariants);
+        // the fused instructions are unknown to the other passes
+        m_passManager.register("fuse", PassManager.Kind.FINAL, this::fuseInstrs);
+        m_passManager.register("regalloc", PassManager.Kind.FINAL, this::allocateRegisters);
+        m_passManager.register("layout", PassManager.Kind.FINAL, this::layoutBlocks);
+        setOptLevel(m_optLevel);
     }
     
     public InstrBlock popLoopStack(){
@@ -48,8 +131,253 @@ public class CompileEnv implements CompileEnvIntf {
         m_entry = new InstrBlock("entry");
         m_blockList.add(m_entry);
         m_currentBlock = m_entry;
-        m_root = m_parser.getBlockStmt();
+        m_mainFunction.setEntry(m_entry);
+        m_root = m_parser.getProgram();
+        m_passManager.runAstPasses();
         m_root.codegen(this);
+        m_passManager.runIrPasses();
+        if (m_profileBlocks == null) {
+            m_profileBlocks = new ArrayList<InstrBlock>(m_blockList);
+        }
+        m_code = link();
+    }
+
+    private void promoteGlobals() {
+        if (m_lazyFunctions) {
+            // the bodies that are not parsed yet may use any global
+            return;
+        }
+        compiler.ast.GlobalPromoter promoter = new compiler.ast.GlobalPromoter(m_root);
+        promoter.run(m_mainFunction);
+        addStatistic("promote.globals", promoter.m_promotedGlobals);
+    }
+
+    private void inlineFunctions() {
+        compiler.ast.FunctionInliner inliner = new compiler.ast.FunctionInliner(m_root, m_inlineThreshold);
+        inliner.run(m_root);
+        int sites = 0;
+        for (Map.Entry<String, Integer> entry : inliner.m_inlinedSites.entrySet()) {
+            addStatistic("inline." + entry.getKey(), entry.getValue());
+            sites += entry.getValue();
+        }
+        addStatistic("inline.sites", sites);
+    }
+
+    private void foldConstants() {
+        compiler.ast.ConstantFolder folder = new compiler.ast.ConstantFolder(m_root);
+        if (m_lazyFunctions) {
+            folder.setIncompleteProgram();
+        }
+        m_root = m_root.fold(folder);
+        addStatistic("constfold.folded", folder.m_foldedExprs);
+        addStatistic("constfold.propagated", folder.m_propagatedVars);
+        addStatistic("constfold.removedBranches", folder.m_removedBranches);
+    }
+
+    private void removeDeadDefinitions() {
+        if (m_lazyFunctions) {
+            // the calls and reads of the bodies that are not parsed yet are unknown
+            return;
+        }
+        compiler.ast.DeadDefinitionEliminator eliminator = new compiler.ast.DeadDefinitionEliminator();
+        eliminator.run(m_root);
+        addStatistic("prune.functions", eliminator.m_removedFunctions);
+        addStatistic("prune.variables", eliminator.m_removedVariables);
+        addStatistic("prune.assignments", eliminator.m_removedAssignments);
+    }
+
+    private void specializeFunctions() throws Exception {
+        if (m_lazyFunctions) {
+            // the bodies that are not parsed yet cannot be specialised
+            return;
+        }
+        compiler.ast.FunctionSpecializer specializer = new compiler.ast.FunctionSpecializer(m_specializeMaxClones,
+                this::cloneFunction);
+        specializer.run(m_root);
+        addStatistic("specialize.clones", specializer.m_clonedFunctions);
+        addStatistic("specialize.sites", specializer.m_specializedSites);
+    }
+
+    /**
+     * parse the body of a function again as the body of a new function,
+     * calls the original had inlined are inlined in the copy as well
+     */
+    private compiler.ast.ASTFuncDefStmtNode cloneFunction(String function, String identifier) throws Exception {
+        FunctionInfo original = m_functionTable.getFunction(function);
+        if (original.m_bodyTokens == null) {
+            return null;
+        }
+        FunctionInfo info = new FunctionInfo(identifier, original.varNames);
+        m_functionTable.createFunction(info);
+        Lexer lexer = new Lexer();
+        lexer.initTokens(original.m_bodyTokens);
+        compiler.ast.ASTFuncDefStmtNode clone = new Parser(this, lexer).getFuncDef(info);
+        if (getPipeline().contains("inline")) {
+            new compiler.ast.FunctionInliner(m_root, m_inlineThreshold).run(clone);
+        }
+        return clone;
+    }
+
+    private void replaceLoopIdioms() {
+        compiler.ast.LoopIdiomRecognizer recognizer = new compiler.ast.LoopIdiomRecognizer();
+        recognizer.run(m_root);
+        addStatistic("idiom.loops", recognizer.m_replacedLoops);
+    }
+
+    private void unswitchLoops() {
+        compiler.ast.LoopUnswitcher unswitcher = new compiler.ast.LoopUnswitcher(m_unswitchMaxNodes);
+        unswitcher.run(m_root);
+        addStatistic("unswitch.loops", unswitcher.m_unswitchedLoops);
+    }
+
+    private void convertIfs() {
+        compiler.ast.IfConverter converter = new compiler.ast.IfConverter(m_ifConvertMaxNodes);
+        converter.run(m_root);
+        addStatistic("ifconvert.selects", converter.m_convertedIfs);
+    }
+
+    private void unrollLoops() {
+        compiler.ast.LoopUnroller unroller = new compiler.ast.LoopUnroller(m_unrollFactor, m_unrollMaxNodes);
+        unroller.run(m_root);
+        addStatistic("unroll.full", unroller.m_fullyUnrolled);
+        addStatistic("unroll.partial", unroller.m_partiallyUnrolled);
+    }
+
+    /**
+     * blocks entered from outside of the block graph
+     */
+    private ArrayList<InstrBlock> getRoots() {
+        return new ArrayList<InstrBlock>(getRootFunctions().keySet());
+    }
+
+    /**
+     * entry block of the main program and of every function with its frame layout
+     */
+    private LinkedHashMap<InstrBlock, FunctionInfo> getRootFunctions() {
+        LinkedHashMap<InstrBlock, FunctionInfo> roots = new LinkedHashMap<InstrBlock, FunctionInfo>();
+        roots.put(m_mainFunction.m_body, m_mainFunction);
+        for (FunctionInfo function : m_functionTable.getFunctions()) {
+            if (function.m_body != null) {
+                roots.put(function.m_body, function);
+            }
+        }
+        return roots;
+    }
+
+    private void simplifyCfg() {
+        CfgSimplifier simplifier = new CfgSimplifier(m_blockList, getRoots());
+        simplifier.run();
+        addStatistic("cfg.threadedJumps", simplifier.m_threadedJumps);
+        addStatistic("cfg.removedJumps", simplifier.m_removedJumps);
+        addStatistic("cfg.removedBlocks", simplifier.m_removedBlocks);
+        addStatistic("cfg.removedInstrs", simplifier.m_removedInstrs);
+    }
+
+    private void buildSsa() {
+        SsaBuilder builder = new SsaBuilder(m_blockList, getRootFunctions());
+        builder.run();
+        addStatistic("ssa.locals", builder.m_promotedLocals);
+        addStatistic("ssa.phis", builder.m_phiCount);
+    }
+
+    private void destructSsa() {
+        SsaDestruction destruction = new SsaDestruction(m_blockList, getRootFunctions());
+        destruction.run();
+        addStatistic("ssa.splitEdges", destruction.m_splitEdges);
+        addStatistic("ssa.moves", destruction.m_moves);
+    }
+
+    private void fuseInstrs() {
+        InstructionFuser fuser = new InstructionFuser(m_blockList, m_fusionRules);
+        fuser.run();
+        for (Map.Entry<InstructionFuser.Rule, Integer> entry : fuser.m_counts.entrySet()) {
+            addStatistic("fuse." + entry.getKey().name().toLowerCase(), entry.getValue());
+        }
+    }
+
+    private void allocateRegisters() {
+        RegisterAllocator allocator = new RegisterAllocator(m_blockList, getRootFunctions());
+        allocator.run();
+        addStatistic("regalloc.slotsBefore", allocator.m_slotsBefore);
+        addStatistic("regalloc.slotsAfter", allocator.m_slotsAfter);
+    }
+
+    private void layoutBlocks() throws Exception {
+        m_profileBlocks = new ArrayList<InstrBlock>(m_blockList);
+        if (m_profile == null) {
+            return;
+        }
+        if (!m_profile.matches(m_profileBlocks)) {
+            throw new Exception("The block profile was recorded for a different program or pipeline");
+        }
+        BlockLayout layout = new BlockLayout(m_blockList, getRootFunctions(), m_profile);
+        layout.run();
+        addStatistic("layout.fallThroughsBefore", layout.m_fallThroughsBefore);
+        addStatistic("layout.fallThroughs", layout.m_fallThroughs);
+    }
+
+    private void verify() throws Exception {
+        new IrVerifier(m_blockList, getRoots(), m_passManager.isSsa()).run();
+    }
+
+    private void optimizePeephole() {
+        PeepholeOptimizer peephole = new PeepholeOptimizer(m_blockList, m_peepholeRules);
+        peephole.run();
+        for (Map.Entry<PeepholeOptimizer.Rule, Integer> entry : peephole.m_counts.entrySet()) {
+            addStatistic("peephole." + entry.getKey().name().toLowerCase(), entry.getValue());
+        }
+    }
+
+    private void numberValues() {
+        ValueNumbering gvn = new ValueNumbering(m_blockList, getRootFunctions());
+        gvn.run();
+        int eliminated = 0;
+        for (Map.Entry<String, Integer> entry : gvn.m_eliminated.entrySet()) {
+            addStatistic("gvn." + entry.getKey(), entry.getValue());
+            eliminated += entry.getValue();
+        }
+        addStatistic("gvn.eliminated", eliminated);
+    }
+
+    private void hoistLoopInvariants() {
+        LoopInvariantMotion licm = new LoopInvariantMotion(m_blockList, getRoots());
+        licm.run();
+        addStatistic("licm.loops", licm.m_loops);
+        addStatistic("licm.hoisted", licm.m_hoistedInstrs);
+    }
+
+    /**
+     * lay out all blocks into one instruction array and assign block addresses,
+     * blocks that do not end in a jump stop execution like before and a
+     * jump to the next block is left out if the block keeps other instructions
+     */
+    private InstrIntf[] link() {
+        return link(new InstrIntf[0], 0);
+    }
+
+    /**
+     * append the blocks from firstBlock on to the linked code
+     */
+    private InstrIntf[] link(InstrIntf[] linked, int firstBlock) {
+        ArrayList<InstrIntf> code = new ArrayList<InstrIntf>(List.of(linked));
+        for (int i = firstBlock; i < m_blockList.size(); i++) {
+            InstrBlock block = m_blockList.get(i);
+            block.setAddress(code.size());
+            InstrIntf last = null;
+            ListIterator<InstrIntf> instrIter = block.getIterator();
+            while (instrIter.hasNext()) {
+                last = instrIter.next();
+                code.add(last);
+            }
+            if (last == null || !last.isTerminator()) {
+                code.add(new Instr.HaltInstr());
+            } else if (block.size() > 1 && i + 1 < m_blockList.size()
+                    && block.getSuccessors().equals(List.of(m_blockList.get(i + 1)))
+                    && (last instanceof Instr.JumpInstr || last instanceof Instr.BreakInstr)) {
+                code.remove(code.size() - 1);
+            }
+        }
+        return code.toArray(new InstrIntf[0]);
     }
 
     public void dumpAst(OutputStream outStream) throws Exception {
@@ -69,12 +397,208 @@ public class CompileEnv implements CompileEnvIntf {
 	    os.flush();
     }
 
+    /**
+     * parse, generate and link the body of a lazily compiled function,
+     * returns the grown code
+     */
+    InstrIntf[] compileFunction(FunctionInfo function) throws Exception {
+        Lexer lexer = new Lexer();
+        lexer.initTokens(function.m_bodyTokens);
+        compiler.ast.ASTFuncDefStmtNode definition = new Parser(this, lexer).getFuncDef(function);
+        int firstBlock = m_blockList.size();
+        definition.codegen(this);
+        m_code = link(m_code, firstBlock);
+        addStatistic("lazy.functions", 1);
+        return m_code;
+    }
+
     public void execute(OutputStream outStream) throws Exception {
-        ExecutionEnv env = new ExecutionEnv(m_functionTable, m_symbolTable, outStream, m_trace);
-        env.execute(m_entry.getIterator());
+        ExecutionEnv env = new ExecutionEnv(m_code, m_mainFunction, m_functionTable, m_symbolTable,
+                outStream, m_trace, m_maxCallDepth);
+        env.setCompiler(this);
+        if (m_recordProfile) {
+            if (m_recordedProfile == null) {
+                m_recordedProfile = new BlockProfile(m_profileBlocks);
+            }
+            m_recordedProfile.attach(m_profileBlocks, m_code);
+            env.setBlockProfile(m_recordedProfile);
+        }
+        if (m_ngramLength > 0) {
+            if (m_ngrams == null) {
+                m_ngrams = new NgramProfile(m_ngramLength);
+            }
+            env.setNgramProfile(m_ngrams);
+        }
+        // passes may put a prologue in front of the entry block
+        env.execute(m_mainFunction.m_body.getAddress());
+    }
+
+    /**
+     * only brace match function bodies when parsing and compile each of
+     * them on its first call, errors in a body show up then as well. Names
+     * resolve as in eager mode, a body sees its own locals and parameters
+     * and all globals of the program block, also those declared after the
+     * function. The passes do not see these bodies, they are compiled as
+     * at level 0.
+     */
+    public void setLazyFunctions(boolean lazyFunctions) {
+        m_lazyFunctions = lazyFunctions;
+    }
+
+    public boolean isLazyFunctions() {
+        return m_lazyFunctions;
+    }
+
+    public void setMaxCallDepth(int maxCallDepth) {
+        m_maxCallDepth = maxCallDepth;
+    }
+
+    public void setInlineThreshold(int inlineThreshold) {
+        m_inlineThreshold = inlineThreshold;
+    }
+
+    /**
+     * iterations per round of a partially unrolled loop, 1 only unrolls loops completely
+     */
+    public void setUnrollFactor(int unrollFactor) {
+        m_unrollFactor = unrollFactor;
+    }
+
+    public void setUnrollMaxNodes(int unrollMaxNodes) {
+        m_unrollMaxNodes = unrollMaxNodes;
+    }
+
+    /**
+     * maximum size of an unswitched loop, 0 unswitches no loop
+     */
+    public void setUnswitchMaxNodes(int unswitchMaxNodes) {
+        m_unswitchMaxNodes = unswitchMaxNodes;
+    }
+
+    /**
+     * maximum size of the values of a converted IF, 0 converts no IF
+     */
+    public void setIfConvertMaxNodes(int ifConvertMaxNodes) {
+        m_ifConvertMaxNodes = ifConvertMaxNodes;
+    }
+
+    /**
+     * maximum number of specialised copies per function, 0 specialises no call
+     */
+    public void setSpecializeMaxClones(int specializeMaxClones) {
+        m_specializeMaxClones = specializeMaxClones;
+    }
+
+    public void setPeepholeRule(PeepholeOptimizer.Rule rule, boolean enabled) {
+        if (enabled) {
+            m_peepholeRules.add(rule);
+        } else {
+            m_peepholeRules.remove(rule);
+        }
+    }
+
+    public void setFusionRule(InstructionFuser.Rule rule, boolean enabled) {
+        if (enabled) {
+            m_fusionRules.add(rule);
+        } else {
+            m_fusionRules.remove(rule);
+        }
+    }
+
+    /**
+     * lay out the blocks for the hot paths of a recorded profile
+     */
+    public void setProfile(BlockProfile profile) {
+        m_profile = profile;
+    }
+
+    /**
+     * record the executed blocks and edges in the following executions
+     */
+    public void setRecordProfile(boolean recordProfile) {
+        m_recordProfile = recordProfile;
+        m_recordedProfile = null;
+    }
+
+    public BlockProfile getRecordedProfile() {
+        return m_recordedProfile;
+    }
+
+    /**
+     * count the executed sequences of length instructions in the following executions
+     */
+    public void setNgramLength(int length) {
+        m_ngramLength = length;
+        m_ngrams = null;
+    }
+
+    /**
+     * report the limit most frequently executed instruction sequences
+     */
+    public void dumpNgrams(OutputStream outStream, int limit) throws Exception {
+        if (m_ngrams != null) {
+            m_ngrams.dump(outStream, limit);
+        }
+    }
+
+    /**
+     * select the default pipeline of an optimization level
+     */
+    public void setOptLevel(int optLevel) throws Exception {
+        if (optLevel < 0 || optLevel > MAX_OPT_LEVEL) {
+            throw new Exception(String.format("Optimization level %d is not in 0..%d", optLevel, MAX_OPT_LEVEL));
+        }
+        m_optLevel = optLevel;
+        m_passManager.setPipeline(OPT_PIPELINES.get(optLevel));
+    }
+
+    /**
+     * run the named passes in this order instead of the pipeline of the optimization level
+     */
+    public void setPipeline(List<String> pipeline) throws Exception {
+        m_passManager.setPipeline(pipeline);
+    }
+
+    public List<String> getPipeline() {
+        return m_passManager.getPipeline();
+    }
+
+    /**
+     * check the instruction blocks after every pass
+     */
+    public void setVerify(boolean verify) {
+        m_passManager.setVerifier(verify ? this::verify : null);
+    }
+
+    public void dumpTimings(OutputStream outStream) throws Exception {
+        m_passManager.dumpTimings(outStream);
+    }
+
+    public int getOptLevel() {
+        return m_optLevel;
+    }
+
+    public void addStatistic(String key, int count) {
+        m_statistics.merge(key, count, Integer::sum);
+    }
+
+    public Map<String, Integer> getStatistics() {
+        return m_statistics;
+    }
+
+    public void dumpStatistics(OutputStream outStream) throws Exception {
+        OutputStreamWriter os = new OutputStreamWriter(outStream, "UTF-8");
+        for (Map.Entry<String, Integer> entry : m_statistics.entrySet()) {
+            os.write(String.format("%s: %d\n", entry.getKey(), entry.getValue()));
+        }
+        os.flush();
     }
 
     public void addInstr(InstrIntf instr) {
+        // results live in a slot of the frame of the enclosing function
+        if (instr.m_slot < 0 && instr.hasResult()) {
+            instr.m_slot = m_currentFunction.allocSlot();
+        }
         m_currentBlock.addInstr(instr);
     }
 
@@ -99,6 +623,18 @@ public class CompileEnv implements CompileEnvIntf {
         return m_currentBlock;
     }
 
+    public void setCurrentFunction(FunctionInfo function) {
+        m_currentFunction = function;
+    }
+
+    public FunctionInfo getCurrentFunction() {
+        return m_currentFunction;
+    }
+
+    public FunctionInfo getMainFunction() {
+        return m_mainFunction;
+    }
+
     public SymbolTable getSymbolTable() {
         return m_symbolTable;
     }
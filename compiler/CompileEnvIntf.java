@@ -21,6 +21,21 @@ public interface CompileEnvIntf {
 	 */
 	public InstrBlock getCurrentBlock();
 
+	/**
+	 *  set function whose body is currently generated
+	 */
+	public void setCurrentFunction(FunctionInfo function);
+
+	/**
+	 *  get function whose body is currently generated, the main program has a function of its own
+	 */
+	public FunctionInfo getCurrentFunction();
+
+	/**
+	 *  get the function holding the frame of the code outside of any function
+	 */
+	public FunctionInfo getMainFunction();
+
 	/**
 	 *  get symbol table
 	 */
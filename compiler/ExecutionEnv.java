@@ -1,30 +1,52 @@
 package compiler;
 
-import compiler.ast.Tuple;
-
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.util.*;
+import java.util.Arrays;
 
 public class ExecutionEnv implements ExecutionEnvIntf {
-    private SymbolTable m_symbolTable;
-    private Stack<Tuple<String, Integer>> m_numberStack;
-    private Stack<Tuple<FunctionInfo, ListIterator<InstrIntf>>> m_executionStack;
-    private ListIterator<InstrIntf> m_instrIter;
-    private FunctionInfo m_currentFunction;
-    private List<Tuple<String, Integer>> m_currentArgs;
+    // number of ints kept per active call on the execution stack
+    private static final int CALL_RECORD_SIZE = 3;
+    private static final int INITIAL_STACK_SIZE = 256;
+    private static final int INITIAL_CALL_DEPTH = 16;
+
+    private int[] m_globals;
+    // frames of all active functions followed by pushed values,
+    // the current frame starts at m_framePointer
+    private int[] m_stack;
+    private int m_framePointer;
+    private int m_stackPointer;
+    // per active call: return address, frame pointer and result slot of the caller
+    private int[] m_callStack;
+    private int m_callDepth;
+    private final int m_maxCallDepth;
+    private InstrIntf[] m_code;
+    private int m_pc;
     private OutputStreamWriter m_outStream;
     private FunctionTable m_functionTable;
     private boolean m_trace;
+    // counts executed instruction sequences if set
+    private NgramProfile m_ngrams;
+    // counts executed blocks and edges if set
+    private BlockProfile m_profile;
+    // compiles the functions that are not compiled yet on their first call
+    private CompileEnv m_compiler;
 
-    public ExecutionEnv(FunctionTable functionTable, SymbolTable symbolTable, OutputStream outStream, boolean trace) throws Exception {
-		m_symbolTable = symbolTable;
-		m_numberStack = new Stack<>();
-		m_executionStack = new Stack<>();
+    public ExecutionEnv(InstrIntf[] code, FunctionInfo main, FunctionTable functionTable, SymbolTable symbolTable,
+                        OutputStream outStream, boolean trace, int maxCallDepth) throws Exception {
+		m_code = code;
+		m_globals = new int[symbolTable.getSlotCount()];
 		m_outStream = new OutputStreamWriter(outStream, "UTF-8");
 		m_functionTable = functionTable;
-        m_currentArgs = new ArrayList<>();
 		m_trace = trace;
+		m_maxCallDepth = maxCallDepth;
+
+		// both stacks grow on demand, only the call depth is limited
+		m_stack = new int[Math.max(INITIAL_STACK_SIZE, 2 * main.m_frameSize)];
+		m_callStack = new int[Math.min(INITIAL_CALL_DEPTH, maxCallDepth) * CALL_RECORD_SIZE];
+		m_framePointer = 0;
+		m_stackPointer = main.m_frameSize;
+		m_callDepth = 0;
 	}
 	
     @Override
@@ -32,39 +54,87 @@ public class ExecutionEnv implements ExecutionEnvIntf {
         return m_functionTable;
     }
     
-	public void push(Tuple<String, Integer> value) {
-		m_numberStack.push(value);
+	public void push(int value) {
+		if (m_stackPointer == m_stack.length) {
+		    m_stack = Arrays.copyOf(m_stack, 2 * m_stack.length);
+		}
+		m_stack[m_stackPointer++] = value;
 	}
 	
-	public Tuple<String, Integer> pop() {
-        return m_numberStack.pop();
+	public int pop() {
+        return m_stack[--m_stackPointer];
 	}
 	
-    public List<Tuple<String, Integer>> getCurrentArgs() {
-        return m_currentArgs;
+    public int getSlot(int slot) {
+        return m_stack[m_framePointer + slot];
+    }
+    
+    public void setSlot(int slot, int value) {
+        m_stack[m_framePointer + slot] = value;
     }
     
-	public Symbol getSymbol(String symbolName) {
-		return m_symbolTable.getSymbol(symbolName);
+	public int[] getGlobals() {
+		return m_globals;
 	}
 
-	public void setInstrIter(ListIterator<InstrIntf> instrIter) { // instrIter == program counter
-		m_instrIter = instrIter;
+	public void setPc(int pc) { // pc == program counter
+		m_pc = pc;
 	}
 	
-    public ListIterator<InstrIntf> getInstrIter() {
-        return m_instrIter;
+    public int getPc() {
+        return m_pc;
     }
     
-    public void execute(ListIterator<InstrIntf> instrIter) throws Exception {
-        m_instrIter = instrIter;
-        while (m_instrIter.hasNext()) {
-            InstrIntf nextInstr = m_instrIter.next();
+    public void setNgramProfile(NgramProfile ngrams) {
+        m_ngrams = ngrams;
+    }
+
+    public void setBlockProfile(BlockProfile profile) {
+        m_profile = profile;
+    }
+
+    public void setCompiler(CompileEnv compiler) {
+        m_compiler = compiler;
+    }
+
+    /**
+     * compile a lazily compiled function before it runs first, the code
+     * grows and the addresses of the code linked so far stay
+     */
+    private void compile(FunctionInfo f) {
+        if (f.m_body != null) {
+            return;
+        }
+        // only bodies that are compiled lazily may be missing
+        if (m_compiler == null || !m_compiler.isLazyFunctions()) {
+            throw new RuntimeException(String.format("Function \"%s\" has no code.", f.m_name));
+        }
+        try {
+            m_code = m_compiler.compileFunction(f);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    public void execute(int entry) throws Exception {
+        m_pc = entry;
+        if (m_profile != null) {
+            m_profile.record(-1, entry);
+        }
+        while (m_pc >= 0) {
+            int pc = m_pc;
+            InstrIntf nextInstr = m_code[m_pc++];
             if (m_trace) {
                 nextInstr.trace(getOutputStream());
                 m_outStream.flush();
             }
+            if (m_ngrams != null) {
+                m_ngrams.record(nextInstr);
+            }
             nextInstr.execute(this);
+            if (m_profile != null) {
+                m_profile.record(pc, m_pc);
+            }
         }
     }
 	
@@ -73,44 +143,56 @@ public class ExecutionEnv implements ExecutionEnvIntf {
 	}
 
     @Override
-    public void pushFunction(FunctionInfo f, List<InstrIntf> arguments) {
-        // Save current function
-        this.m_executionStack.push(new Tuple<>(m_currentFunction, m_instrIter));
+    public void pushFunction(FunctionInfo f, int resultSlot) {
+        compile(f);
+        if (m_callDepth == m_maxCallDepth) {
+            throw new RuntimeException(String.format("Stack overflow: maximum call depth of %d exceeded.", m_maxCallDepth));
+        }
 
-        // Store current arguments
-        for (int i = m_currentArgs.size() - 1; i >= 0; i--) {
-            m_numberStack.push(m_currentArgs.get(i));
+        // Save caller, the pc already points after the call
+        int record = m_callDepth * CALL_RECORD_SIZE;
+        if (record == m_callStack.length) {
+            m_callStack = Arrays.copyOf(m_callStack, 2 * m_callStack.length);
         }
-        
-        // Activate new function
-        m_currentFunction = f;
-        setInstrIter(f.m_body.getIterator());
-        
-        // Load new arguments
-        m_currentArgs.clear();
-        for (int i = arguments.size() - 1; i >= 0; i--) {
-            String identifier = f.varNames.get(i);
-            int value = arguments.get(i).m_value;
-            m_currentArgs.add(new Tuple<>(identifier, value));
+        m_callStack[record] = m_pc;
+        m_callStack[record + 1] = m_framePointer;
+        m_callStack[record + 2] = resultSlot;
+        m_callDepth++;
+
+        // Activate new function, the pushed arguments
+        // are the first slots of its frame
+        m_framePointer = m_stackPointer - f.varNames.size();
+        m_stackPointer = m_framePointer + f.m_frameSize;
+        if (m_stackPointer > m_stack.length) {
+            m_stack = Arrays.copyOf(m_stack, Math.max(2 * m_stack.length, m_stackPointer));
         }
+        m_pc = f.m_body.getAddress();
     }
 
     @Override
-    public void popFunction() {
-        // Activate previous function
-        Tuple<FunctionInfo, ListIterator<InstrIntf>> result = this.m_executionStack.pop();
-        m_currentFunction = result._1;
-    	setInstrIter(result._2);
-        
-        // Only read arguments, when there is a function
-        if (m_currentFunction == null) {
-            return;
-        }
-        
-        // Pop values from stack
-        m_currentArgs.clear();
-        for (int i = 0; i < m_currentFunction.varNames.size(); i++) {
-            m_currentArgs.add(m_numberStack.pop());
+    public void replaceFunction(FunctionInfo f) {
+        compile(f);
+        // Move the pushed arguments to the start of the
+        // current frame, the call record stays as it is
+        int numArgs = f.varNames.size();
+        System.arraycopy(m_stack, m_stackPointer - numArgs, m_stack, m_framePointer, numArgs);
+        m_stackPointer = m_framePointer + f.m_frameSize;
+        if (m_stackPointer > m_stack.length) {
+            m_stack = Arrays.copyOf(m_stack, Math.max(2 * m_stack.length, m_stackPointer));
         }
+        m_pc = f.m_body.getAddress();
+    }
+
+    @Override
+    public void popFunction(int value) {
+        // Activate previous function
+        m_callDepth--;
+        int record = m_callDepth * CALL_RECORD_SIZE;
+        m_stackPointer = m_framePointer;
+        m_framePointer = m_callStack[record + 1];
+        m_pc = m_callStack[record];
+
+        // Store return value in the frame of the caller
+        m_stack[m_framePointer + m_callStack[record + 2]] = value;
     }
 }
@@ -1,47 +1,59 @@
 package compiler;
 
-import compiler.ast.Tuple;
-
 import java.io.OutputStreamWriter;
-import java.util.List;
-import java.util.ListIterator;
 
 public interface ExecutionEnvIntf {
     public FunctionTable getFunctionTable();
     
 	/**
-	 *  push temporary on value stack
+	 *  push value on value stack, above the current frame
 	 */
-    public void push(Tuple<String, Integer> argument);
+    public void push(int value);
     
     /**
-     *  pop (consume) temporary from value stack	
+     *  pop (consume) value from value stack	
      */
-	public Tuple<String, Integer> pop();
+	public int pop();
+	/**
+	 *  push a frame for function on execution stack, the arguments
+	 *  have been pushed on the value stack before and become the
+	 *  parameter slots of the new frame, the return value of the
+	 *  function is stored in resultSlot of the caller frame
+	 */
+	public void pushFunction(FunctionInfo function, int resultSlot);
 	/**
-	 *  push function on execution stack
+	 * pop function from execution stack and pass value to the caller
 	 */
-	public void pushFunction(FunctionInfo function, List<InstrIntf> args);
+	public void popFunction(int value);
 	/**
-	 * pop function from execution stack
+	 * replace the current frame by a frame of function, the arguments
+	 * are taken from the value stack like in pushFunction, the result
+	 * goes to the caller of the replaced function
 	 */
-	public void popFunction();
+	public void replaceFunction(FunctionInfo function);
     
-    public List<Tuple<String, Integer>> getCurrentArgs();
 	/**
-	 *  get symbol from symbol table
+	 *  read slot of the current frame
+	 */
+	public int getSlot(int slot);
+	/**
+	 *  write slot of the current frame
+	 */
+	public void setSlot(int slot, int value);
+	/**
+	 *  get the global variable slots, indexed by Symbol.m_slot
 	 */
-	public Symbol getSymbol(String symbolName);
+	public int[] getGlobals();
     /**
-     *  set instruction iterator to the given block
+     *  set address of next instruction, -1 stops execution
      */
-	public void setInstrIter(ListIterator<InstrIntf> instrIter);
+	public void setPc(int pc);
     
-    public ListIterator<InstrIntf> getInstrIter();
+    public int getPc();
     /**
-     *  execute instruction list	
+     *  execute program starting at the given address
      */
-	public void execute(ListIterator<InstrIntf> instrIter) throws Exception;
+	public void execute(int entry) throws Exception;
 	/**
 	 *  get output stream
 	 */
@@ -0,0 +1,156 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Predecessors and dominators of the blocks reachable from a set of
+ * entry blocks. The entries are treated as successors of a virtual
+ * root, so an entry has no immediate dominator.
+ */
+public class FlowGraph {
+    // reachable blocks in reverse postorder
+    private ArrayList<InstrBlock> m_blocks;
+    private HashMap<InstrBlock, Integer> m_order;
+    private HashMap<InstrBlock, ArrayList<InstrBlock>> m_predecessors;
+    // index of the immediate dominator in m_blocks, -1 for the virtual root
+    private int[] m_idom;
+
+    public FlowGraph(Collection<InstrBlock> roots) {
+        m_blocks = new ArrayList<InstrBlock>();
+        m_order = new HashMap<InstrBlock, Integer>();
+        m_predecessors = new HashMap<InstrBlock, ArrayList<InstrBlock>>();
+        HashSet<InstrBlock> visited = new HashSet<InstrBlock>();
+        for (InstrBlock root : roots) {
+            postorder(root, visited);
+        }
+        Collections.reverse(m_blocks);
+        for (int i = 0; i < m_blocks.size(); i++) {
+            m_order.put(m_blocks.get(i), i);
+            m_predecessors.put(m_blocks.get(i), new ArrayList<InstrBlock>());
+        }
+        for (InstrBlock block : m_blocks) {
+            for (InstrBlock successor : block.getSuccessors()) {
+                m_predecessors.get(successor).add(block);
+            }
+        }
+        computeDominators(new HashSet<InstrBlock>(roots));
+    }
+
+    private void postorder(InstrBlock block, HashSet<InstrBlock> visited) {
+        // iterative to survive long chains of blocks
+        ArrayList<InstrBlock> stack = new ArrayList<InstrBlock>();
+        ArrayList<Integer> next = new ArrayList<Integer>();
+        if (!visited.add(block)) {
+            return;
+        }
+        stack.add(block);
+        next.add(0);
+        while (!stack.isEmpty()) {
+            int top = stack.size() - 1;
+            ArrayList<InstrBlock> successors = stack.get(top).getSuccessors();
+            int index = next.get(top);
+            if (index < successors.size()) {
+                next.set(top, index + 1);
+                InstrBlock successor = successors.get(index);
+                if (visited.add(successor)) {
+                    stack.add(successor);
+                    next.add(0);
+                }
+            } else {
+                m_blocks.add(stack.remove(top));
+                next.remove(top);
+            }
+        }
+    }
+
+    /**
+     * iterative algorithm of Cooper, Harvey and Kennedy
+     */
+    private void computeDominators(HashSet<InstrBlock> roots) {
+        int size = m_blocks.size();
+        final int undefined = -2;
+        m_idom = new int[size];
+        for (int i = 0; i < size; i++) {
+            m_idom[i] = roots.contains(m_blocks.get(i)) ? -1 : undefined;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < size; i++) {
+                if (m_idom[i] == -1) {
+                    continue;
+                }
+                int idom = undefined;
+                for (InstrBlock predecessor : m_predecessors.get(m_blocks.get(i))) {
+                    int p = m_order.get(predecessor);
+                    if (m_idom[p] == undefined) {
+                        continue;
+                    }
+                    idom = idom == undefined ? p : intersect(p, idom);
+                }
+                if (idom != m_idom[i]) {
+                    m_idom[i] = idom;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private int intersect(int a, int b) {
+        while (a != b) {
+            if (a < 0 || b < 0) {
+                return -1;
+            }
+            while (a > b) {
+                a = m_idom[a];
+                if (a < 0) {
+                    return -1;
+                }
+            }
+            while (b > a) {
+                b = m_idom[b];
+                if (b < 0) {
+                    return -1;
+                }
+            }
+        }
+        return a;
+    }
+
+    public List<InstrBlock> getBlocks() {
+        return m_blocks;
+    }
+
+    public List<InstrBlock> getPredecessors(InstrBlock block) {
+        return m_predecessors.get(block);
+    }
+
+    public boolean contains(InstrBlock block) {
+        return m_order.containsKey(block);
+    }
+
+    /**
+     * immediate dominator of block, null for the entry blocks
+     */
+    public InstrBlock getIdom(InstrBlock block) {
+        int idom = m_idom[m_order.get(block)];
+        return idom < 0 ? null : m_blocks.get(idom);
+    }
+
+    public boolean dominates(InstrBlock a, InstrBlock b) {
+        int target = m_order.get(a);
+        int current = m_order.get(b);
+        while (current >= 0) {
+            if (current == target) {
+                return true;
+            }
+            current = m_idom[current];
+        }
+        return false;
+    }
+}
@@ -6,6 +6,14 @@ public class FunctionInfo {
 	public String m_name;
 	public InstrBlock m_body;
 	public List<String> varNames;
+	// number of slots in a frame of this function, parameters come first,
+	// then locals, then temporaries
+	public int m_frameSize;
+	// next free local slot, slots of closed scopes are reused
+	private int m_nextLocal;
+	// tokens of the body from { to }, parsed again when a lazily compiled
+	// function is called first or a specialised copy is made
+	public List<Token> m_bodyTokens;
 	
 	public FunctionInfo(String name, List<String> varNames) {
 		this(name, null, varNames);
@@ -15,9 +23,39 @@ public class FunctionInfo {
         m_name = name;
         m_body = body;
         this.varNames = varNames;
+        m_frameSize = varNames.size();
+        m_nextLocal = 0;
     }
     
     public void setEntry(InstrBlock entry) {
         m_body = entry;
     }
+
+    /**
+     * reserve a new slot in the frame of this function
+     */
+    public int allocSlot() {
+        return m_frameSize++;
+    }
+
+    /**
+     * reserve a slot for a parameter or local variable, must happen before
+     * any temporary is allocated
+     */
+    public int allocLocal() {
+        int slot = m_nextLocal++;
+        m_frameSize = Math.max(m_frameSize, m_nextLocal);
+        return slot;
+    }
+
+    public int getNextLocal() {
+        return m_nextLocal;
+    }
+
+    /**
+     * make all local slots from firstSlot on available again
+     */
+    public void releaseLocals(int firstSlot) {
+        m_nextLocal = firstSlot;
+    }
 }
@@ -1,5 +1,6 @@
 package compiler;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
@@ -37,4 +38,12 @@ public class FunctionTable implements FunctionTableIntf {
 		FunctionInfo fct = m_functionMap.get(fctName);
 		return fct;
 	}
+
+	/**
+	 * All functions of the program.
+	 * @return collection of FunctionInfo
+	 */
+	public Collection<FunctionInfo> getFunctions() {
+		return m_functionMap.values();
+	}
 }
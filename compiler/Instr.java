@@ -1,12 +1,40 @@
 package compiler;
 
-import compiler.ast.Tuple;
-
 import java.io.OutputStreamWriter;
+import java.util.ArrayList;
 import java.util.List;
 
 public abstract class Instr {
 
+    /**
+     * common base of the instructions combining two operands
+     */
+    public abstract static class BinaryInstr extends InstrIntf {
+        InstrIntf m_lhs;
+        InstrIntf m_rhs;
+
+        BinaryInstr(InstrIntf lhs, InstrIntf rhs) {
+            m_lhs = lhs;
+            m_rhs = rhs;
+        }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_lhs, m_rhs};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            if (index == 0) {
+                m_lhs = operand;
+            } else {
+                m_rhs = operand;
+            }
+        }
+
+        boolean isPure() {
+            return true;
+        }
+    }
+
     public static class PrintInstr extends InstrIntf {
         private InstrIntf m_expr;
 
@@ -15,7 +43,7 @@ public abstract class Instr {
         }
 
         public void execute(ExecutionEnvIntf env) {
-            int expr = m_expr.getValue(); 
+            int expr = m_expr.getValue(env); 
             try {
                 env.getOutputStream().write(Integer.toString(expr));
                 env.getOutputStream().write('\n');
@@ -28,29 +56,93 @@ public abstract class Instr {
         public void trace(OutputStreamWriter os) throws Exception {
             os.write("PRINT\n");
         }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_expr};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_expr = operand;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
     }
     
     public static class CallInstr extends InstrIntf {
 
         private FunctionInfo m_context;
-        private List<InstrIntf> m_args;
+        private InstrIntf[] m_args;
 
         public CallInstr(FunctionInfo context, List<InstrIntf> args) {
             m_context = context;
-            m_args = args;
+            m_args = args.toArray(new InstrIntf[0]);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            // Put calling function on stack and
-            // activate called function
-            env.pushFunction(m_context, m_args);
+            // Pass arguments on the value stack, put calling
+            // function on stack and activate called function,
+            // the return value will be stored in our slot
+            for (InstrIntf arg : m_args) {
+                env.push(arg.getValue(env));
+            }
+            env.pushFunction(m_context, m_slot);
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write(String.format("CALL %s\n", m_context.m_name));
         }
+
+        InstrIntf[] getOperands() {
+            return m_args;
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_args[index] = operand;
+        }
     }
     
+    public static class TailCallInstr extends InstrIntf {
+
+        private FunctionInfo m_context;
+        private InstrIntf[] m_args;
+
+        public TailCallInstr(FunctionInfo context, List<InstrIntf> args) {
+            m_context = context;
+            m_args = args.toArray(new InstrIntf[0]);
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            // The called function takes over the frame of the current
+            // one and returns directly to our caller
+            for (InstrIntf arg : m_args) {
+                env.push(arg.getValue(env));
+            }
+            env.replaceFunction(m_context);
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write(String.format("TAILCALL %s\n", m_context.m_name));
+        }
+
+        InstrIntf[] getOperands() {
+            return m_args;
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_args[index] = operand;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+
+        boolean isTerminator() {
+            return true;
+        }
+    }
+
     public static class ReturnInstr extends InstrIntf {
         
         private InstrIntf m_result;
@@ -60,43 +152,44 @@ public abstract class Instr {
         }
 
         public void execute(ExecutionEnvIntf env) {
-            // Retrieve return value
-            int value = m_result.getValue();
-            
-            // Go back to calling function
-            env.popFunction();
-            
-            // Assign return value to instruction:
-            // The previous element must be read, because the
-            // iterator points after the call instruction.
-            // It previously has been read using next(), after
-            // which the iterator (now pointing after it) has
-            // been put onto the stack as a return address.
-            InstrIntf call = env.getInstrIter().previous();
-            call.m_value = value;
+            // Retrieve return value from the callee frame
+            int value = m_result.getValue(env);
             
-            // After assigning the value, the old iterator
-            // state must be restored, so that the instruction
-            // following the call is executed next.
-            env.getInstrIter().next();
+            // Go back to calling function, which stores
+            // the value in the slot of the call instruction
+            // and continues after the call
+            env.popFunction(value);
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write("RETURN\n");
         }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_result};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_result = operand;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+
+        boolean isTerminator() {
+            return true;
+        }
     }
 
-    public static class AddInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    public static class AddInstr extends BinaryInstr {
 
         public AddInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;                   
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = m_lhs.getValue() + m_rhs.getValue();
+            env.setSlot(m_slot, m_lhs.getValue(env) + m_rhs.getValue(env));
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
@@ -104,17 +197,14 @@ public abstract class Instr {
         }
     }
 
-    public static class BitAndInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    public static class BitAndInstr extends BinaryInstr {
 
         public BitAndInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;                   
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = m_lhs.getValue() & m_rhs.getValue();
+            env.setSlot(m_slot, m_lhs.getValue(env) & m_rhs.getValue(env));
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
@@ -122,17 +212,14 @@ public abstract class Instr {
         }
     }
 
-    public static class BitOrInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    public static class BitOrInstr extends BinaryInstr {
 
         public BitOrInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;                   
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = m_lhs.getValue() | m_rhs.getValue();
+            env.setSlot(m_slot, m_lhs.getValue(env) | m_rhs.getValue(env));
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
@@ -140,17 +227,14 @@ public abstract class Instr {
         }
     }
 
-    public static class SubInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    public static class SubInstr extends BinaryInstr {
 
         public SubInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;                   
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = m_lhs.getValue() - m_rhs.getValue();
+            env.setSlot(m_slot, m_lhs.getValue(env) - m_rhs.getValue(env));
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
@@ -159,59 +243,33 @@ public abstract class Instr {
     }
 
     public static class IntegerLiteralInstr extends InstrIntf {
+        private final int m_constant;
+
         public IntegerLiteralInstr(int value) {
-            m_value = value;
+            m_constant = value;
         }
 
         public void execute(ExecutionEnvIntf env) {
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
-            os.write(String.format("INTEGER %s\n", m_value));
+            os.write(String.format("INTEGER %s\n", m_constant));
         }
-    }
-
-    public static class AndInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
 
-        public AndInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;
+        int getValue(ExecutionEnvIntf env) {
+            return m_constant;
         }
 
-        public void execute(ExecutionEnvIntf env) {
-            if(m_lhs.getValue() != 0 && m_rhs.getValue() != 0) {
-                m_value = 1;
-            } else {
-                m_value = 0;
-            }
+        public int getConstant() {
+            return m_constant;
         }
 
-        public void trace(OutputStreamWriter os) throws Exception {
-            os.write("AND\n");
+        boolean isPure() {
+            return true;
         }
-    }
-
-    public static class OrInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
 
-        public OrInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;
-        }
-
-        public void execute(ExecutionEnvIntf env) {
-            if(m_lhs.getValue() != 0 || m_rhs.getValue() != 0) {
-                m_value = 1;
-            } else {
-                m_value = 0;
-            }
-        }
-
-        public void trace(OutputStreamWriter os) throws Exception {
-            os.write("OR\n");
+        boolean hasResult() {
+            return false;
         }
     }
 
@@ -225,7 +283,7 @@ public abstract class Instr {
         }
 
         public void execute(ExecutionEnvIntf env) {
-            env.setInstrIter(m_target.getIterator());
+            env.setPc(m_target.getAddress());
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
@@ -233,6 +291,14 @@ public abstract class Instr {
             os.write(m_target.getName());
             os.write("\n");
         }
+
+        boolean hasResult() {
+            return false;
+        }
+
+        boolean isTerminator() {
+            return true;
+        }
     }
 
     public static class JumpCondInstr extends InstrIntf {
@@ -247,11 +313,11 @@ public abstract class Instr {
         }
 
         public void execute(ExecutionEnvIntf env) {
-            int condition = m_cond.getValue();
+            int condition = m_cond.getValue(env);
             if (condition != 0) {
-                env.setInstrIter(m_targetTrue.getIterator());
+                env.setPc(m_targetTrue.getAddress());
             } else {
-                env.setInstrIter(m_targetFalse.getIterator());
+                env.setPc(m_targetFalse.getAddress());
             }
         }
 
@@ -262,6 +328,121 @@ public abstract class Instr {
             os.write(m_targetFalse.getName());
             os.write("\n");
         }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_cond};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_cond = operand;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+
+        boolean isTerminator() {
+            return true;
+        }
+    }
+
+    /**
+     * jump to entry value - min of the table if the value is in range,
+     * to the default target otherwise
+     */
+    public static class JumpTableInstr extends InstrIntf {
+        InstrIntf m_value;
+        int m_min;
+        InstrBlock[] m_targets;
+        InstrBlock m_default;
+
+        public JumpTableInstr(InstrIntf value, int min, InstrBlock[] targets, InstrBlock defaultTarget) {
+            m_value = value;
+            m_min = min;
+            m_targets = targets;
+            m_default = defaultTarget;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            // computed in long so the distance to min cannot wrap
+            long index = (long) m_value.getValue(env) - m_min;
+            if (index >= 0 && index < m_targets.length) {
+                env.setPc(m_targets[(int) index].getAddress());
+            } else {
+                env.setPc(m_default.getAddress());
+            }
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write(String.format("JUMP TABLE %d", m_min));
+            for (InstrBlock target : m_targets) {
+                os.write(", ");
+                os.write(target.getName());
+            }
+            os.write(", default ");
+            os.write(m_default.getName());
+            os.write("\n");
+        }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_value};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_value = operand;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+
+        boolean isTerminator() {
+            return true;
+        }
+    }
+
+    /**
+     * decrement the loop counter in a frame slot and continue in the
+     * loop body while it is positive, in the exit otherwise
+     */
+    public static class CountDownInstr extends InstrIntf {
+        private String m_identifier;
+        private int m_index;
+        InstrBlock m_body;
+        InstrBlock m_exit;
+
+        public CountDownInstr(String identifier, int index, InstrBlock body, InstrBlock exit) {
+            m_identifier = identifier;
+            m_index = index;
+            m_body = body;
+            m_exit = exit;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            int count = env.getSlot(m_index) - 1;
+            env.setSlot(m_index, count);
+            env.setPc(count > 0 ? m_body.getAddress() : m_exit.getAddress());
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write(String.format("COUNT DOWN %s %s, %s\n", m_identifier, m_body.getName(), m_exit.getName()));
+        }
+
+        int getIndex() {
+            return m_index;
+        }
+
+        String getIdentifier() {
+            return m_identifier;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+
+        boolean isTerminator() {
+            return true;
+        }
     }
 
     public static class BreakInstr extends InstrIntf {
@@ -272,12 +453,39 @@ public abstract class Instr {
         }
 
         public void execute(ExecutionEnvIntf env) {
-            env.setInstrIter(m_target.getIterator());
+            env.setPc(m_target.getAddress());
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write("BREAK\n");
         }
+
+        boolean hasResult() {
+            return false;
+        }
+
+        boolean isTerminator() {
+            return true;
+        }
+    }
+
+    public static class HaltInstr extends InstrIntf {
+
+        public void execute(ExecutionEnvIntf env) {
+            env.setPc(-1);
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write("HALT\n");
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+
+        boolean isTerminator() {
+            return true;
+        }
     }
 
     public static class QuestionMarkInstr extends InstrIntf {
@@ -292,67 +500,173 @@ public abstract class Instr {
     	}
     	
     	public void execute(ExecutionEnvIntf env) {
-    		if(m_cond.getValue() != 0) {
-    			m_value = m_targetTrue.getValue();
+    		if(m_cond.getValue(env) != 0) {
+    			env.setSlot(m_slot, m_targetTrue.getValue(env));
     		}else {	
-    			m_value = m_targetFalse.getValue();
+    			env.setSlot(m_slot, m_targetFalse.getValue(env));
     		}
     	}
     	
     	public void trace(OutputStreamWriter os) throws Exception {
-    		os.write("QUESTIONMARK ");
-    		os.write(String.valueOf(m_targetTrue.getValue()));
-    		os.write(", ");
-    		os.write(String.valueOf(m_targetFalse.getValue()));
-    		os.write("\n");
+    		os.write("QUESTIONMARK\n");
+    	}
+
+    	InstrIntf[] getOperands() {
+    		return new InstrIntf[] {m_cond, m_targetTrue, m_targetFalse};
+    	}
+
+    	void setOperand(int index, InstrIntf operand) {
+    		if (index == 0) {
+    			m_cond = operand;
+    		} else if (index == 1) {
+    			m_targetTrue = operand;
+    		} else {
+    			m_targetFalse = operand;
+    		}
+    	}
+
+    	boolean isPure() {
+    		return true;
     	}
     }
 
-    public static class CompareLessInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    /**
+     * value of a variable at the start of a block with several predecessors,
+     * operand i is the value arriving from predecessor i. Phis only exist
+     * while the code is in SSA form and never get executed.
+     */
+    public static class PhiInstr extends InstrIntf {
+        ArrayList<InstrBlock> m_predecessors;
+        ArrayList<InstrIntf> m_values;
+
+        public PhiInstr() {
+            m_predecessors = new ArrayList<InstrBlock>();
+            m_values = new ArrayList<InstrIntf>();
+        }
+
+        void addOperand(InstrBlock predecessor, InstrIntf value) {
+            m_predecessors.add(predecessor);
+            m_values.add(value);
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            throw new IllegalStateException("phi has not been lowered");
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write("PHI\n");
+        }
+
+        InstrIntf[] getOperands() {
+            return m_values.toArray(new InstrIntf[0]);
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_values.set(index, operand);
+        }
+    }
+
+    /**
+     * store a value in the slot of another instruction, used when leaving
+     * SSA form to pass the operands of a phi
+     */
+    public static class MoveInstr extends InstrIntf {
+        InstrIntf m_target;
+        InstrIntf m_source;
+
+        public MoveInstr(InstrIntf target, InstrIntf source) {
+            m_target = target;
+            m_source = source;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            env.setSlot(m_target.m_slot, m_source.getValue(env));
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write("MOVE\n");
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_source};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_source = operand;
+        }
+    }
+
+    /**
+     * copy of another value in a slot of its own
+     */
+    public static class CopyInstr extends InstrIntf {
+        InstrIntf m_source;
+
+        public CopyInstr(InstrIntf source) {
+            m_source = source;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            env.setSlot(m_slot, m_source.getValue(env));
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write("COPY\n");
+        }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_source};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_source = operand;
+        }
+
+        boolean isPure() {
+            return true;
+        }
+    }
+
+    public static class CompareLessInstr extends BinaryInstr {
 
         public CompareLessInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;                   
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = (m_lhs.getValue() <  m_rhs.getValue()) ? 1 : 0;
+            env.setSlot(m_slot, (m_lhs.getValue(env) <  m_rhs.getValue(env)) ? 1 : 0);
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write("CMPLESS\n");
         }
     }
-    public static class CompareGreaterInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    public static class CompareGreaterInstr extends BinaryInstr {
 
         public CompareGreaterInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;                   
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = (m_lhs.getValue() >  m_rhs.getValue()) ? 1 : 0;
+            env.setSlot(m_slot, (m_lhs.getValue(env) >  m_rhs.getValue(env)) ? 1 : 0);
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write("CMPGREATER\n");
         }
     }
-    public static class CompareEqualInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    public static class CompareEqualInstr extends BinaryInstr {
 
         public CompareEqualInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;                   
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = (m_lhs.getValue() ==  m_rhs.getValue()) ? 1 : 0;
+            env.setSlot(m_slot, (m_lhs.getValue(env) ==  m_rhs.getValue(env)) ? 1 : 0);
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
@@ -360,128 +674,441 @@ public abstract class Instr {
         }
     }
 
+    /**
+     * compare two values and jump like JUMP COND on the result, replaces
+     * a compare whose result is only read by the following jump
+     */
+    public static class CompareJumpInstr extends InstrIntf {
+        public enum Condition {
+            LESS,
+            GREATER,
+            EQUAL
+        }
+
+        Condition m_condition;
+        InstrIntf m_lhs;
+        InstrIntf m_rhs;
+        InstrBlock m_targetTrue;
+        InstrBlock m_targetFalse;
+
+        public CompareJumpInstr(Condition condition, InstrIntf lhs, InstrIntf rhs,
+                                InstrBlock targetTrue, InstrBlock targetFalse) {
+            m_condition = condition;
+            m_lhs = lhs;
+            m_rhs = rhs;
+            m_targetTrue = targetTrue;
+            m_targetFalse = targetFalse;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            int lhs = m_lhs.getValue(env);
+            int rhs = m_rhs.getValue(env);
+            boolean condition;
+            switch (m_condition) {
+                case LESS:
+                    condition = lhs < rhs;
+                    break;
+                case GREATER:
+                    condition = lhs > rhs;
+                    break;
+                default:
+                    condition = lhs == rhs;
+                    break;
+            }
+            env.setPc(condition ? m_targetTrue.getAddress() : m_targetFalse.getAddress());
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write(String.format("JUMP CMP%s %s, %s\n", m_condition, m_targetTrue.getName(), m_targetFalse.getName()));
+        }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_lhs, m_rhs};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            if (index == 0) {
+                m_lhs = operand;
+            } else {
+                m_rhs = operand;
+            }
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+
+        boolean isTerminator() {
+            return true;
+        }
+    }
+
     public static class VarAccessInstr extends InstrIntf {
         private String m_identifier;
+        private int m_globalSlot;
 
-        public VarAccessInstr(String identifier) {
-            m_identifier = identifier;
+        public VarAccessInstr(Symbol symbol) {
+            m_identifier = symbol.m_name;
+            m_globalSlot = symbol.m_slot;
         }
 
         public void execute(ExecutionEnvIntf env) {
-            // Get value from argument, if any identifier
-            // exists for the current function
-            for (Tuple<String, Integer> arg : env.getCurrentArgs()) {
-                if (arg._1.equals(m_identifier)) {
-                    m_value = arg._2;
-                    return;
-                }
-            }
-    
-            // No argument has been found, so take global value
-            m_value = env.getSymbol(m_identifier).m_number;
+            env.setSlot(m_slot, env.getGlobals()[m_globalSlot]);
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write(String.format("VARIABLE %s\n", m_identifier));
         }
+
+        int getGlobalSlot() {
+            return m_globalSlot;
+        }
+
+        boolean isPure() {
+            return true;
+        }
     }
 
     public static class VarAssignInstr extends InstrIntf {
         InstrIntf m_expr;
         Symbol m_symbol;
+        private int m_globalSlot;
 
         public VarAssignInstr(InstrIntf expr, Symbol symbol) {
             m_expr = expr;
             m_symbol = symbol;
+            m_globalSlot = symbol.m_slot;
         }
 
         public void execute(ExecutionEnvIntf env) {
-            env.getSymbol(m_symbol.m_name).m_number = m_expr.getValue();
+            env.getGlobals()[m_globalSlot] = m_expr.getValue(env);
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write("ASSIGN\n");
         }
+
+        int getGlobalSlot() {
+            return m_globalSlot;
+        }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_expr};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_expr = operand;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+    }
+
+    /**
+     * add a constant to a global, replaces reading, adding and storing it
+     */
+    public static class IncrementVarInstr extends InstrIntf {
+        private String m_identifier;
+        private int m_globalSlot;
+        private int m_delta;
+
+        public IncrementVarInstr(Symbol symbol, int delta) {
+            m_identifier = symbol.m_name;
+            m_globalSlot = symbol.m_slot;
+            m_delta = delta;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            env.getGlobals()[m_globalSlot] += m_delta;
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write(String.format("INCREMENT %s %d\n", m_identifier, m_delta));
+        }
+
+        int getGlobalSlot() {
+            return m_globalSlot;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+    }
+
+    /**
+     * add a value to a global, replaces reading, adding and storing it
+     */
+    public static class AddVarInstr extends InstrIntf {
+        InstrIntf m_expr;
+        private String m_identifier;
+        private int m_globalSlot;
+
+        public AddVarInstr(InstrIntf expr, Symbol symbol) {
+            m_expr = expr;
+            m_identifier = symbol.m_name;
+            m_globalSlot = symbol.m_slot;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            env.getGlobals()[m_globalSlot] += m_expr.getValue(env);
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write(String.format("ADD %s\n", m_identifier));
+        }
+
+        int getGlobalSlot() {
+            return m_globalSlot;
+        }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_expr};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_expr = operand;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+    }
+
+    public static class LocalAccessInstr extends InstrIntf {
+        private String m_identifier;
+        private int m_index;
+
+        public LocalAccessInstr(String identifier, int index) {
+            m_identifier = identifier;
+            m_index = index;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            env.setSlot(m_slot, env.getSlot(m_index));
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write(String.format("LOCAL %s\n", m_identifier));
+        }
+
+        int getIndex() {
+            return m_index;
+        }
+
+        boolean isPure() {
+            return true;
+        }
+    }
+
+    public static class LocalAssignInstr extends InstrIntf {
+        InstrIntf m_expr;
+        private String m_identifier;
+        private int m_index;
+
+        public LocalAssignInstr(InstrIntf expr, String identifier, int index) {
+            m_expr = expr;
+            m_identifier = identifier;
+            m_index = index;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            env.setSlot(m_index, m_expr.getValue(env));
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write(String.format("ASSIGN LOCAL %s\n", m_identifier));
+        }
+
+        int getIndex() {
+            return m_index;
+        }
+
+        String getIdentifier() {
+            return m_identifier;
+        }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_expr};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_expr = operand;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+    }
+
+    /**
+     * add a constant to a local, replaces reading, adding and storing it
+     */
+    public static class IncrementLocalInstr extends InstrIntf {
+        private String m_identifier;
+        private int m_index;
+        private int m_delta;
+
+        public IncrementLocalInstr(String identifier, int index, int delta) {
+            m_identifier = identifier;
+            m_index = index;
+            m_delta = delta;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            env.setSlot(m_index, env.getSlot(m_index) + m_delta);
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write(String.format("INCREMENT LOCAL %s %d\n", m_identifier, m_delta));
+        }
+
+        int getIndex() {
+            return m_index;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
+    }
+
+    /**
+     * add a value to a local, replaces reading, adding and storing it
+     */
+    public static class AddLocalInstr extends InstrIntf {
+        InstrIntf m_expr;
+        private String m_identifier;
+        private int m_index;
+
+        public AddLocalInstr(InstrIntf expr, String identifier, int index) {
+            m_expr = expr;
+            m_identifier = identifier;
+            m_index = index;
+        }
+
+        public void execute(ExecutionEnvIntf env) {
+            env.setSlot(m_index, env.getSlot(m_index) + m_expr.getValue(env));
+        }
+
+        public void trace(OutputStreamWriter os) throws Exception {
+            os.write(String.format("ADD LOCAL %s\n", m_identifier));
+        }
+
+        int getIndex() {
+            return m_index;
+        }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {m_expr};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            m_expr = operand;
+        }
+
+        boolean hasResult() {
+            return false;
+        }
     }
 
     public static class NotInstr extends InstrIntf {
-        private final InstrIntf operand;
+        private InstrIntf operand;
 
         public NotInstr(InstrIntf operand) {
             this.operand = operand;
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = operand.getValue() == 0 ? 1 : 0;
+            env.setSlot(m_slot, operand.getValue(env) == 0 ? 1 : 0);
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write("NOT\n");
         }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {operand};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            this.operand = operand;
+        }
+
+        boolean isPure() {
+            return true;
+        }
     }
 
     public static class MinusInstr extends InstrIntf {
-        private final InstrIntf operand;
+        private InstrIntf operand;
 
         public MinusInstr(InstrIntf operand) {
             this.operand = operand;
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = -operand.getValue();
+            env.setSlot(m_slot, -operand.getValue(env));
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write("MINUS\n");
         }
+
+        InstrIntf[] getOperands() {
+            return new InstrIntf[] {operand};
+        }
+
+        void setOperand(int index, InstrIntf operand) {
+            this.operand = operand;
+        }
+
+        boolean isPure() {
+            return true;
+        }
     }
 
-    public static class MulInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    public static class MulInstr extends BinaryInstr {
 
         public MulInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = m_lhs.getValue() * m_rhs.getValue();
+            env.setSlot(m_slot, m_lhs.getValue(env) * m_rhs.getValue(env));
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write("MUL\n");
         }
     }
-    public static class DivInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    public static class DivInstr extends BinaryInstr {
 
         public DivInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = m_lhs.getValue() / m_rhs.getValue();
+            env.setSlot(m_slot, m_lhs.getValue(env) / m_rhs.getValue(env));
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
             os.write("DIV\n");
         }
+
+        boolean isPure() {
+            // division by zero fails
+            return false;
+        }
     }
 
-    public static class ShiftLeftInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    public static class ShiftLeftInstr extends BinaryInstr {
 
         public ShiftLeftInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;                   
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = m_lhs.getValue() << m_rhs.getValue();
+            env.setSlot(m_slot, m_lhs.getValue(env) << m_rhs.getValue(env));
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
@@ -489,17 +1116,14 @@ public abstract class Instr {
         }
     }
 
-    public static class ShiftRightInstr extends InstrIntf {
-        private InstrIntf m_lhs;
-        private InstrIntf m_rhs;
+    public static class ShiftRightInstr extends BinaryInstr {
 
         public ShiftRightInstr(InstrIntf lhs, InstrIntf rhs) {
-            m_lhs = lhs;
-            m_rhs = rhs;                   
+            super(lhs, rhs);
         }
 
         public void execute(ExecutionEnvIntf env) {
-            m_value = m_lhs.getValue() >> m_rhs.getValue();
+            env.setSlot(m_slot, m_lhs.getValue(env) >> m_rhs.getValue(env));
         }
 
         public void trace(OutputStreamWriter os) throws Exception {
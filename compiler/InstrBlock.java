@@ -2,11 +2,15 @@ package compiler;
 
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.ListIterator;
 
 public class InstrBlock {
 	private ArrayList<InstrIntf> m_instrList;
 	private String m_name;
+	// position of the first instruction in the linked program, -1 before linking
+	private int m_address = -1;
 
 	public InstrBlock(String name) {
 		m_name = name;
@@ -41,7 +45,145 @@ public class InstrBlock {
 	    }
 	}
 
+	/**
+	 * last instruction of the block or null if the block is empty
+	 */
+	InstrIntf getLastInstr() {
+		return m_instrList.isEmpty() ? null : m_instrList.get(m_instrList.size() - 1);
+	}
+
+	void removeLastInstr() {
+		m_instrList.remove(m_instrList.size() - 1);
+	}
+
+	void replaceLastInstr(InstrIntf instr) {
+		m_instrList.set(m_instrList.size() - 1, instr);
+	}
+
+	/**
+	 * move all instructions of other to the end of this block
+	 */
+	void append(InstrBlock other) {
+		m_instrList.addAll(other.m_instrList);
+		other.m_instrList.clear();
+	}
+
+	/**
+	 * drop instructions behind the first terminator, they can never execute
+	 * @return number of removed instructions
+	 */
+	int removeDeadTail() {
+		for (int i = 0; i < m_instrList.size(); i++) {
+			if (m_instrList.get(i).isTerminator()) {
+				int removed = m_instrList.size() - i - 1;
+				m_instrList.subList(i + 1, m_instrList.size()).clear();
+				return removed;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * let the terminator continue in to instead of from, the instruction
+	 * is replaced because jumps may be shared between blocks
+	 */
+	void replaceSuccessor(InstrBlock from, InstrBlock to) {
+		InstrIntf last = getLastInstr();
+		if (last instanceof Instr.JumpInstr && ((Instr.JumpInstr) last).m_target == from
+				|| last instanceof Instr.BreakInstr && ((Instr.BreakInstr) last).m_target == from) {
+			replaceLastInstr(new Instr.JumpInstr(to));
+		} else if (last instanceof Instr.JumpCondInstr) {
+			Instr.JumpCondInstr jump = (Instr.JumpCondInstr) last;
+			replaceLastInstr(new Instr.JumpCondInstr(jump.m_cond,
+					jump.m_targetTrue == from ? to : jump.m_targetTrue,
+					jump.m_targetFalse == from ? to : jump.m_targetFalse));
+		} else if (last instanceof Instr.CompareJumpInstr) {
+			Instr.CompareJumpInstr jump = (Instr.CompareJumpInstr) last;
+			replaceLastInstr(new Instr.CompareJumpInstr(jump.m_condition, jump.m_lhs, jump.m_rhs,
+					jump.m_targetTrue == from ? to : jump.m_targetTrue,
+					jump.m_targetFalse == from ? to : jump.m_targetFalse));
+		} else if (last instanceof Instr.CountDownInstr) {
+			Instr.CountDownInstr loop = (Instr.CountDownInstr) last;
+			replaceLastInstr(new Instr.CountDownInstr(loop.getIdentifier(), loop.getIndex(),
+					loop.m_body == from ? to : loop.m_body, loop.m_exit == from ? to : loop.m_exit));
+		} else if (last instanceof Instr.JumpTableInstr) {
+			Instr.JumpTableInstr table = (Instr.JumpTableInstr) last;
+			InstrBlock[] targets = table.m_targets.clone();
+			for (int i = 0; i < targets.length; i++) {
+				targets[i] = targets[i] == from ? to : targets[i];
+			}
+			replaceLastInstr(new Instr.JumpTableInstr(table.m_value, table.m_min, targets,
+					table.m_default == from ? to : table.m_default));
+		}
+	}
+
+	void insertInstr(int index, InstrIntf instr) {
+		m_instrList.add(index, instr);
+	}
+
+	/**
+	 * add instruction in front of the terminator or at the end if there is none
+	 */
+	void insertBeforeTerminator(InstrIntf instr) {
+		InstrIntf last = getLastInstr();
+		if (last != null && last.isTerminator()) {
+			m_instrList.add(m_instrList.size() - 1, instr);
+		} else {
+			m_instrList.add(instr);
+		}
+	}
+
+	boolean removeInstr(InstrIntf instr) {
+		return m_instrList.remove(instr);
+	}
+
+	InstrIntf getInstr(int index) {
+		return m_instrList.get(index);
+	}
+
+	int size() {
+		return m_instrList.size();
+	}
+
+	/**
+	 * blocks reached by the terminator, a block without
+	 * terminator halts and has no successors
+	 */
+	ArrayList<InstrBlock> getSuccessors() {
+		ArrayList<InstrBlock> successors = new ArrayList<InstrBlock>();
+		InstrIntf last = getLastInstr();
+		if (last instanceof Instr.JumpInstr) {
+			successors.add(((Instr.JumpInstr) last).m_target);
+		} else if (last instanceof Instr.BreakInstr) {
+			successors.add(((Instr.BreakInstr) last).m_target);
+		} else if (last instanceof Instr.JumpCondInstr) {
+			successors.add(((Instr.JumpCondInstr) last).m_targetTrue);
+			successors.add(((Instr.JumpCondInstr) last).m_targetFalse);
+		} else if (last instanceof Instr.CompareJumpInstr) {
+			successors.add(((Instr.CompareJumpInstr) last).m_targetTrue);
+			successors.add(((Instr.CompareJumpInstr) last).m_targetFalse);
+		} else if (last instanceof Instr.CountDownInstr) {
+			successors.add(((Instr.CountDownInstr) last).m_body);
+			successors.add(((Instr.CountDownInstr) last).m_exit);
+		} else if (last instanceof Instr.JumpTableInstr) {
+			// a table often repeats its targets, each one is an edge only once
+			Instr.JumpTableInstr table = (Instr.JumpTableInstr) last;
+			LinkedHashSet<InstrBlock> targets = new LinkedHashSet<InstrBlock>(Arrays.asList(table.m_targets));
+			targets.add(table.m_default);
+			successors.addAll(targets);
+		}
+		return successors;
+	}
+
 	public String getName() {
 		return m_name;
 	}
+
+	public int getAddress() {
+		return m_address;
+	}
+
+	public void setAddress(int address) {
+		m_address = address;
+	}
 }
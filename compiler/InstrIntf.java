@@ -3,7 +3,8 @@ package compiler;
 import java.io.OutputStreamWriter;
 
 public abstract class InstrIntf {
-    protected int m_value = 0;
+    // frame slot holding the result of this instruction, -1 if it has none
+    protected int m_slot = -1;
 	/**
 	 * execute this instruction
 	 */
@@ -13,10 +14,41 @@ public abstract class InstrIntf {
 	 */
 	abstract public void trace(OutputStreamWriter os) throws Exception;
 	/**
-	 * return the result value of the instruction
+	 * return the result value of the instruction in the current frame
 	 */
-	int getValue() {
-	    return m_value;
+	int getValue(ExecutionEnvIntf env) {
+	    return env.getSlot(m_slot);
+	}
+	/**
+	 * true if the instruction produces a result that needs a frame slot
+	 */
+	boolean hasResult() {
+	    return true;
+	}
+	/**
+	 * true if control never falls through to the next instruction
+	 */
+	boolean isTerminator() {
+	    return false;
+	}
+	/**
+	 * instructions whose results are read by this instruction
+	 */
+	InstrIntf[] getOperands() {
+	    return new InstrIntf[0];
+	}
+	/**
+	 * let operand number index read the result of another instruction
+	 */
+	void setOperand(int index, InstrIntf operand) {
+	    throw new IndexOutOfBoundsException(index);
+	}
+	/**
+	 * true if the instruction only computes its result and cannot fail,
+	 * so it may be moved as long as its operands keep their values
+	 */
+	boolean isPure() {
+	    return false;
 	}
 
 }
@@ -0,0 +1,238 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Replaces frequently executed instruction sequences by superinstructions
+ * that do the work of the whole sequence in one dispatch. The sequences
+ * are the most frequent ones in the n-gram profile of our test programs,
+ * see NgramProfile. A sequence is only fused if the values it computes
+ * in between are read by no other instruction.
+ * The fused instructions are not known to the other passes, so this
+ * one only runs at the end of the pipeline.
+ */
+public class InstructionFuser {
+    public enum Rule {
+        // CMP a, b + JUMP COND -> JUMP CMP a, b
+        COMPARE_JUMP,
+        // x = x + c, x = x - c -> INCREMENT x c
+        INCREMENT,
+        // x = x + e, x = e + x -> ADD x e
+        ADD_ASSIGN,
+        // INTEGER c -> nothing, the users read the constant anyway
+        LITERAL
+    }
+
+    private List<InstrBlock> m_blockList;
+    private EnumSet<Rule> m_rules;
+    // number of instructions reading each value
+    private HashMap<InstrIntf, Integer> m_uses;
+
+    // applications per rule
+    public LinkedHashMap<Rule, Integer> m_counts;
+
+    public InstructionFuser(List<InstrBlock> blockList, EnumSet<Rule> rules) {
+        m_blockList = blockList;
+        m_rules = rules;
+        m_uses = new HashMap<InstrIntf, Integer>();
+        m_counts = new LinkedHashMap<Rule, Integer>();
+        for (Rule rule : Rule.values()) {
+            m_counts.put(rule, 0);
+        }
+    }
+
+    public void run() {
+        for (InstrBlock block : m_blockList) {
+            ListIterator<InstrIntf> iter = block.getIterator();
+            while (iter.hasNext()) {
+                for (InstrIntf operand : iter.next().getOperands()) {
+                    m_uses.merge(operand, 1, Integer::sum);
+                }
+            }
+        }
+        for (InstrBlock block : m_blockList) {
+            fuseBlock(block);
+        }
+    }
+
+    private boolean apply(Rule rule) {
+        if (!m_rules.contains(rule)) {
+            return false;
+        }
+        m_counts.merge(rule, 1, Integer::sum);
+        return true;
+    }
+
+    private boolean isSingleUse(InstrIntf instr) {
+        return m_uses.getOrDefault(instr, 0) == 1;
+    }
+
+    /**
+     * position of the instruction executed before position index,
+     * literals do nothing and are skipped
+     */
+    private static int previous(List<InstrIntf> instrs, int index) {
+        index--;
+        while (index >= 0 && instrs.get(index) instanceof Instr.IntegerLiteralInstr) {
+            index--;
+        }
+        return index;
+    }
+
+    private void fuseBlock(InstrBlock block) {
+        ArrayList<InstrIntf> instrs = new ArrayList<InstrIntf>();
+        ListIterator<InstrIntf> iter = block.getIterator();
+        while (iter.hasNext()) {
+            instrs.add(iter.next());
+        }
+        HashSet<InstrIntf> removed = new HashSet<InstrIntf>();
+        HashMap<InstrIntf, InstrIntf> fused = new HashMap<InstrIntf, InstrIntf>();
+        for (int i = 0; i < instrs.size(); i++) {
+            InstrIntf instr = instrs.get(i);
+            InstrIntf replacement = null;
+            if (instr instanceof Instr.JumpCondInstr) {
+                replacement = fuseCompareJump(instrs, i, (Instr.JumpCondInstr) instr, removed);
+            } else if (instr instanceof Instr.LocalAssignInstr || instr instanceof Instr.VarAssignInstr) {
+                replacement = fuseAssign(instrs, i, instr, removed);
+            }
+            if (replacement != null) {
+                fused.put(instr, replacement);
+            } else if (instr instanceof Instr.IntegerLiteralInstr && !removed.contains(instr)
+                    && apply(Rule.LITERAL)) {
+                removed.add(instr);
+            }
+        }
+        iter = block.getIterator();
+        while (iter.hasNext()) {
+            InstrIntf instr = iter.next();
+            if (removed.contains(instr)) {
+                iter.remove();
+            } else if (fused.containsKey(instr)) {
+                iter.set(fused.get(instr));
+            }
+        }
+    }
+
+    private InstrIntf fuseCompareJump(List<InstrIntf> instrs, int index, Instr.JumpCondInstr jump,
+            HashSet<InstrIntf> removed) {
+        // moves in front of the jump may change the operands of an earlier compare
+        int position = previous(instrs, index);
+        if (position < 0 || instrs.get(position) != jump.m_cond || !isSingleUse(jump.m_cond)) {
+            return null;
+        }
+        Instr.CompareJumpInstr.Condition condition;
+        if (jump.m_cond instanceof Instr.CompareLessInstr) {
+            condition = Instr.CompareJumpInstr.Condition.LESS;
+        } else if (jump.m_cond instanceof Instr.CompareGreaterInstr) {
+            condition = Instr.CompareJumpInstr.Condition.GREATER;
+        } else if (jump.m_cond instanceof Instr.CompareEqualInstr) {
+            condition = Instr.CompareJumpInstr.Condition.EQUAL;
+        } else {
+            return null;
+        }
+        if (!apply(Rule.COMPARE_JUMP)) {
+            return null;
+        }
+        Instr.BinaryInstr compare = (Instr.BinaryInstr) jump.m_cond;
+        removed.add(compare);
+        return new Instr.CompareJumpInstr(condition, compare.m_lhs, compare.m_rhs,
+                jump.m_targetTrue, jump.m_targetFalse);
+    }
+
+    /**
+     * true if instr reads the variable stored by assign
+     */
+    private static boolean readsVariable(InstrIntf instr, InstrIntf assign) {
+        if (assign instanceof Instr.LocalAssignInstr) {
+            return instr instanceof Instr.LocalAccessInstr
+                    && ((Instr.LocalAccessInstr) instr).getIndex() == ((Instr.LocalAssignInstr) assign).getIndex();
+        }
+        return instr instanceof Instr.VarAccessInstr
+                && ((Instr.VarAccessInstr) instr).getGlobalSlot() == ((Instr.VarAssignInstr) assign).getGlobalSlot();
+    }
+
+    /**
+     * true if instr may change the variable stored by assign
+     */
+    private static boolean writesVariable(InstrIntf instr, InstrIntf assign) {
+        if (assign instanceof Instr.LocalAssignInstr) {
+            return instr instanceof Instr.LocalAssignInstr
+                    && ((Instr.LocalAssignInstr) instr).getIndex() == ((Instr.LocalAssignInstr) assign).getIndex();
+        }
+        return instr instanceof Instr.VarAssignInstr
+                && ((Instr.VarAssignInstr) instr).getGlobalSlot() == ((Instr.VarAssignInstr) assign).getGlobalSlot()
+                || instr instanceof Instr.CallInstr;
+    }
+
+    private InstrIntf fuseAssign(List<InstrIntf> instrs, int index, InstrIntf assign, HashSet<InstrIntf> removed) {
+        InstrIntf expr = assign.getOperands()[0];
+        int position = previous(instrs, index);
+        if (position < 0 || instrs.get(position) != expr || !isSingleUse(expr)
+                || !(expr instanceof Instr.AddInstr || expr instanceof Instr.SubInstr)) {
+            return null;
+        }
+        Instr.BinaryInstr binary = (Instr.BinaryInstr) expr;
+        InstrIntf access;
+        InstrIntf value;
+        if (readsVariable(binary.m_lhs, assign)) {
+            access = binary.m_lhs;
+            value = binary.m_rhs;
+        } else if (binary instanceof Instr.AddInstr && readsVariable(binary.m_rhs, assign)) {
+            access = binary.m_rhs;
+            value = binary.m_lhs;
+        } else {
+            return null;
+        }
+        // the fused instruction reads the variable when it stores it, other
+        // users of the read keep it
+        int accessPosition = instrs.indexOf(access);
+        if (accessPosition < 0 || accessPosition > position) {
+            return null;
+        }
+        for (int i = accessPosition + 1; i < position; i++) {
+            if (writesVariable(instrs.get(i), assign)) {
+                return null;
+            }
+        }
+
+        InstrIntf replacement;
+        if (value instanceof Instr.IntegerLiteralInstr) {
+            if (!apply(Rule.INCREMENT)) {
+                return null;
+            }
+            int delta = ((Instr.IntegerLiteralInstr) value).getConstant();
+            // wraps like the subtraction, -MIN_VALUE is MIN_VALUE
+            delta = binary instanceof Instr.SubInstr ? -delta : delta;
+            if (assign instanceof Instr.LocalAssignInstr) {
+                Instr.LocalAssignInstr local = (Instr.LocalAssignInstr) assign;
+                replacement = new Instr.IncrementLocalInstr(local.getIdentifier(), local.getIndex(), delta);
+            } else {
+                replacement = new Instr.IncrementVarInstr(((Instr.VarAssignInstr) assign).m_symbol, delta);
+            }
+            if (isSingleUse(value)) {
+                removed.add(value);
+            }
+        } else {
+            if (binary instanceof Instr.SubInstr || !apply(Rule.ADD_ASSIGN)) {
+                return null;
+            }
+            if (assign instanceof Instr.LocalAssignInstr) {
+                Instr.LocalAssignInstr local = (Instr.LocalAssignInstr) assign;
+                replacement = new Instr.AddLocalInstr(value, local.getIdentifier(), local.getIndex());
+            } else {
+                replacement = new Instr.AddVarInstr(value, ((Instr.VarAssignInstr) assign).m_symbol);
+            }
+        }
+        if (isSingleUse(access)) {
+            removed.add(access);
+        }
+        removed.add(binary);
+        return replacement;
+    }
+}
@@ -0,0 +1,165 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Checks the consistency of the instruction blocks between passes:
+ * every block ends in its only terminator, jumps stay inside the program,
+ * operands are computed before they are read and phis match the
+ * predecessors of their block. Instructions behind a terminator can
+ * never execute and are ignored.
+ */
+public class IrVerifier {
+    private List<InstrBlock> m_blockList;
+    private List<InstrBlock> m_roots;
+    // true while phis are allowed
+    private boolean m_ssa;
+
+    private FlowGraph m_graph;
+    // block and position of every instruction
+    private HashMap<InstrIntf, InstrBlock> m_defBlock;
+    private HashMap<InstrIntf, Integer> m_defIndex;
+    // phis that were lowered to moves
+    private HashSet<InstrIntf> m_moveTargets;
+
+    public IrVerifier(List<InstrBlock> blockList, List<InstrBlock> roots, boolean ssa) {
+        m_blockList = blockList;
+        m_roots = roots;
+        m_ssa = ssa;
+    }
+
+    public void run() throws Exception {
+        m_graph = new FlowGraph(m_roots);
+        m_defBlock = new HashMap<InstrIntf, InstrBlock>();
+        m_defIndex = new HashMap<InstrIntf, Integer>();
+        m_moveTargets = new HashSet<InstrIntf>();
+        HashSet<InstrBlock> blocks = new HashSet<InstrBlock>(m_blockList);
+        for (InstrBlock root : m_roots) {
+            if (!blocks.contains(root)) {
+                fail(root, "entry block is not part of the program");
+            }
+        }
+        for (InstrBlock block : m_blockList) {
+            List<InstrIntf> instrs = liveInstrs(block);
+            for (int i = 0; i < instrs.size(); i++) {
+                InstrIntf instr = instrs.get(i);
+                // jumps may be shared, but a value has exactly one place
+                if (instr.hasResult() && m_defBlock.containsKey(instr)) {
+                    fail(block, "instruction " + describe(instr) + " appears twice");
+                }
+                m_defBlock.put(instr, block);
+                m_defIndex.put(instr, i);
+                if (instr instanceof Instr.MoveInstr) {
+                    m_moveTargets.add(((Instr.MoveInstr) instr).m_target);
+                }
+            }
+            for (InstrBlock successor : block.getSuccessors()) {
+                if (!blocks.contains(successor)) {
+                    fail(block, "jump to block " + successor.getName() + " outside of the program");
+                }
+            }
+        }
+        for (InstrBlock block : m_blockList) {
+            if (m_graph.contains(block)) {
+                verifyBlock(block);
+            }
+        }
+    }
+
+    /**
+     * instructions up to and including the first terminator
+     */
+    private static List<InstrIntf> liveInstrs(InstrBlock block) {
+        ArrayList<InstrIntf> instrs = new ArrayList<InstrIntf>();
+        ListIterator<InstrIntf> iter = block.getIterator();
+        while (iter.hasNext()) {
+            InstrIntf instr = iter.next();
+            instrs.add(instr);
+            if (instr.isTerminator()) {
+                break;
+            }
+        }
+        return instrs;
+    }
+
+    private void verifyBlock(InstrBlock block) throws Exception {
+        List<InstrIntf> instrs = liveInstrs(block);
+        boolean leading = true;
+        for (int i = 0; i < instrs.size(); i++) {
+            InstrIntf instr = instrs.get(i);
+            if (instr.hasResult() && instr.m_slot < 0) {
+                fail(block, describe(instr) + " has no result slot");
+            }
+            if (instr instanceof Instr.PhiInstr) {
+                if (!m_ssa) {
+                    fail(block, "phi outside of SSA form");
+                }
+                if (!leading) {
+                    fail(block, "phi behind other instructions");
+                }
+                verifyPhi(block, (Instr.PhiInstr) instr);
+                continue;
+            }
+            leading = false;
+            InstrIntf[] operands = instr.getOperands();
+            for (int j = 0; j < operands.length; j++) {
+                verifyOperand(block, i, instr, operands[j]);
+            }
+        }
+    }
+
+    private void verifyOperand(InstrBlock block, int index, InstrIntf user, InstrIntf operand) throws Exception {
+        if (operand == null) {
+            fail(block, describe(user) + " has no operand");
+        }
+        if (operand instanceof Instr.IntegerLiteralInstr) {
+            return;
+        }
+        if (!operand.hasResult()) {
+            fail(block, describe(user) + " reads " + describe(operand) + " which has no result");
+        }
+        InstrBlock defBlock = m_defBlock.get(operand);
+        if (defBlock == null) {
+            if (!m_moveTargets.contains(operand)) {
+                fail(block, describe(user) + " reads " + describe(operand) + " which is never computed");
+            }
+            return;
+        }
+        if (!m_graph.contains(defBlock) || !m_graph.dominates(defBlock, block)
+                || defBlock == block && m_defIndex.get(operand) >= index) {
+            fail(block, describe(user) + " reads " + describe(operand) + " before it is computed");
+        }
+    }
+
+    private void verifyPhi(InstrBlock block, Instr.PhiInstr phi) throws Exception {
+        List<InstrBlock> predecessors = m_graph.getPredecessors(block);
+        if (phi.m_predecessors.size() != phi.m_values.size()
+                || !new HashSet<InstrBlock>(phi.m_predecessors).equals(new HashSet<InstrBlock>(predecessors))) {
+            fail(block, "phi operands do not match the predecessors");
+        }
+        for (int i = 0; i < phi.m_values.size(); i++) {
+            InstrIntf value = phi.m_values.get(i);
+            InstrBlock predecessor = phi.m_predecessors.get(i);
+            if (value instanceof Instr.IntegerLiteralInstr) {
+                continue;
+            }
+            // the value has to be available at the end of the predecessor
+            InstrBlock defBlock = m_defBlock.get(value);
+            if (defBlock == null || !m_graph.contains(defBlock) || !m_graph.dominates(defBlock, predecessor)) {
+                fail(block, "phi operand " + describe(value) + " does not reach " + predecessor.getName());
+            }
+        }
+    }
+
+    private static String describe(InstrIntf instr) {
+        return instr.getClass().getSimpleName() + "@" + instr.m_slot;
+    }
+
+    private static void fail(InstrBlock block, String msg) throws Exception {
+        throw new Exception(String.format("IR verification failed in block %s: %s", block.getName(), msg));
+    }
+}
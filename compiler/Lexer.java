@@ -36,6 +36,11 @@ public class Lexer {
     protected Vector<MachineInfo> m_machineList;
     protected MultiLineInputReader m_input;
     protected Token m_currentToken;
+    // tokens read instead of the input if set, see initTokens
+    private List<Token> m_replay;
+    private int m_replayPos;
+    // tokens consumed since startRecording, null while not recording
+    private List<Token> m_recorded;
 
     public Lexer() {
         m_machineList = new Vector<MachineInfo>();
@@ -118,6 +123,36 @@ public class Lexer {
         advance();
     }
 
+    /**
+     * read the tokens recorded by an earlier run instead of an input
+     */
+    public void initTokens(List<Token> tokens) throws Exception {
+        m_input = new MultiLineInputReader("");
+        m_replay = tokens;
+        m_replayPos = 0;
+        advance();
+    }
+
+    /**
+     * keep the tokens consumed from now on, the current token is the first
+     */
+    public void startRecording() {
+        m_recorded = new ArrayList<Token>();
+    }
+
+    /**
+     * the tokens consumed since startRecording
+     */
+    public List<Token> stopRecording() {
+        List<Token> tokens = m_recorded;
+        m_recorded = null;
+        return tokens;
+    }
+
+    public boolean isRecording() {
+        return m_recorded != null;
+    }
+
     public void initMachines(String input) {
         for (MachineInfo machine : m_machineList) {
             machine.init(input);
@@ -215,7 +250,18 @@ public class Lexer {
     }
 
     public void advance() throws Exception {
-        m_currentToken = nextToken();
+        if (m_recorded != null) {
+            m_recorded.add(m_currentToken);
+        }
+        if (m_replay == null) {
+            m_currentToken = nextToken();
+        } else if (m_replayPos < m_replay.size()) {
+            m_currentToken = m_replay.get(m_replayPos++);
+        } else {
+            m_currentToken = new Token();
+            m_currentToken.m_type = Token.Type.EOF;
+            m_currentToken.m_value = new String();
+        }
     }
 
     public void expect(Token.Type tokenType) throws Exception {
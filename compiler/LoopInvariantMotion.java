@@ -0,0 +1,163 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Finds natural loops from back edges in the block graph and moves
+ * computations whose operands do not change inside a loop into a new
+ * preheader block that is executed once before the loop is entered.
+ */
+public class LoopInvariantMotion {
+    private List<InstrBlock> m_blockList;
+    private List<InstrBlock> m_roots;
+    private int m_nextPreheader;
+
+    public int m_loops;
+    public int m_hoistedInstrs;
+
+    public LoopInvariantMotion(List<InstrBlock> blockList, List<InstrBlock> roots) {
+        m_blockList = blockList;
+        m_roots = roots;
+    }
+
+    public void run() {
+        HashSet<InstrBlock> processed = new HashSet<InstrBlock>();
+        while (true) {
+            FlowGraph graph = new FlowGraph(m_roots);
+            HashMap<InstrBlock, HashSet<InstrBlock>> loops = findLoops(graph);
+            // inner loops first so their invariants can move on to the outer loop
+            InstrBlock header = null;
+            for (InstrBlock candidate : loops.keySet()) {
+                if (!processed.contains(candidate)
+                        && (header == null || loops.get(candidate).size() < loops.get(header).size())) {
+                    header = candidate;
+                }
+            }
+            if (header == null) {
+                break;
+            }
+            processed.add(header);
+            m_loops++;
+            hoist(graph, header, loops.get(header));
+        }
+    }
+
+    /**
+     * blocks of the natural loop of every header, loops sharing a header are merged
+     */
+    private HashMap<InstrBlock, HashSet<InstrBlock>> findLoops(FlowGraph graph) {
+        HashMap<InstrBlock, HashSet<InstrBlock>> loops = new HashMap<InstrBlock, HashSet<InstrBlock>>();
+        for (InstrBlock block : graph.getBlocks()) {
+            for (InstrBlock successor : block.getSuccessors()) {
+                // a function entry is also entered by calls, it cannot get a preheader
+                if (!graph.dominates(successor, block) || m_roots.contains(successor)) {
+                    continue;
+                }
+                HashSet<InstrBlock> body = loops.computeIfAbsent(successor, h -> new HashSet<InstrBlock>());
+                body.add(successor);
+                ArrayList<InstrBlock> workList = new ArrayList<InstrBlock>();
+                workList.add(block);
+                while (!workList.isEmpty()) {
+                    InstrBlock current = workList.remove(workList.size() - 1);
+                    if (body.add(current)) {
+                        workList.addAll(graph.getPredecessors(current));
+                    }
+                }
+            }
+        }
+        return loops;
+    }
+
+    private void hoist(FlowGraph graph, InstrBlock header, HashSet<InstrBlock> body) {
+        // what the loop may change
+        HashSet<Integer> writtenLocals = new HashSet<Integer>();
+        HashSet<Integer> writtenGlobals = new HashSet<Integer>();
+        HashSet<InstrIntf> defined = new HashSet<InstrIntf>();
+        boolean calls = false;
+        for (InstrBlock block : body) {
+            ListIterator<InstrIntf> iter = block.getIterator();
+            while (iter.hasNext()) {
+                InstrIntf instr = iter.next();
+                if (instr.hasResult()) {
+                    defined.add(instr);
+                }
+                if (instr instanceof Instr.MoveInstr) {
+                    // a lowered phi gets its value from moves in the predecessors
+                    defined.add(((Instr.MoveInstr) instr).m_target);
+                } else if (instr instanceof Instr.LocalAssignInstr) {
+                    writtenLocals.add(((Instr.LocalAssignInstr) instr).getIndex());
+                } else if (instr instanceof Instr.CountDownInstr) {
+                    writtenLocals.add(((Instr.CountDownInstr) instr).getIndex());
+                } else if (instr instanceof Instr.VarAssignInstr) {
+                    writtenGlobals.add(((Instr.VarAssignInstr) instr).getGlobalSlot());
+                } else if (instr instanceof Instr.CallInstr || instr instanceof Instr.TailCallInstr) {
+                    calls = true;
+                }
+            }
+        }
+
+        // collect invariants in program order so operands stay in front of their users
+        ArrayList<InstrIntf> hoisted = new ArrayList<InstrIntf>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (InstrBlock block : m_blockList) {
+                if (!body.contains(block)) {
+                    continue;
+                }
+                ListIterator<InstrIntf> iter = block.getIterator();
+                while (iter.hasNext()) {
+                    InstrIntf instr = iter.next();
+                    if (isInvariant(instr, defined, writtenLocals, writtenGlobals, calls)) {
+                        iter.remove();
+                        defined.remove(instr);
+                        hoisted.add(instr);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        if (hoisted.isEmpty()) {
+            return;
+        }
+
+        InstrBlock preheader = new InstrBlock("preheader_" + m_nextPreheader++);
+        for (InstrIntf instr : hoisted) {
+            preheader.addInstr(instr);
+        }
+        preheader.addInstr(new Instr.JumpInstr(header));
+        for (InstrBlock predecessor : graph.getPredecessors(header)) {
+            if (!body.contains(predecessor)) {
+                predecessor.replaceSuccessor(header, preheader);
+            }
+        }
+        m_blockList.add(m_blockList.indexOf(header), preheader);
+        m_hoistedInstrs += hoisted.size();
+    }
+
+    private static boolean isInvariant(InstrIntf instr, HashSet<InstrIntf> defined,
+            HashSet<Integer> writtenLocals, HashSet<Integer> writtenGlobals, boolean calls) {
+        // literals cost nothing where they are
+        if (!instr.isPure() || !instr.hasResult()) {
+            return false;
+        }
+        if (instr instanceof Instr.LocalAccessInstr
+                && writtenLocals.contains(((Instr.LocalAccessInstr) instr).getIndex())) {
+            return false;
+        }
+        if (instr instanceof Instr.VarAccessInstr
+                && (calls || writtenGlobals.contains(((Instr.VarAccessInstr) instr).getGlobalSlot()))) {
+            return false;
+        }
+        for (InstrIntf operand : instr.getOperands()) {
+            if (defined.contains(operand)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
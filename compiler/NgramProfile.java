@@ -0,0 +1,69 @@
+package compiler;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts how often each sequence of n instruction kinds is executed, the
+ * most frequent sequences are the candidates for superinstructions.
+ * Sequences run across jumps and calls just like the interpreter does.
+ */
+public class NgramProfile {
+    private final int m_length;
+    // kinds of the last executed instructions as a ring buffer
+    private String[] m_window;
+    private int m_next;
+    private long m_executed;
+    private HashMap<String, Long> m_counts;
+
+    public NgramProfile(int length) {
+        m_length = length;
+        m_window = new String[length];
+        m_counts = new HashMap<String, Long>();
+    }
+
+    private static String kind(InstrIntf instr) {
+        String name = instr.getClass().getSimpleName();
+        return name.endsWith("Instr") ? name.substring(0, name.length() - "Instr".length()) : name;
+    }
+
+    public void record(InstrIntf instr) {
+        m_window[m_next] = kind(instr);
+        m_next = (m_next + 1) % m_length;
+        m_executed++;
+        if (m_executed < m_length) {
+            return;
+        }
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < m_length; i++) {
+            if (i > 0) {
+                key.append(' ');
+            }
+            key.append(m_window[(m_next + i) % m_length]);
+        }
+        m_counts.merge(key.toString(), 1L, Long::sum);
+    }
+
+    public Map<String, Long> getCounts() {
+        return m_counts;
+    }
+
+    /**
+     * the most frequent sequences with their share of all recorded ones
+     */
+    public void dump(OutputStream outStream, int limit) throws Exception {
+        OutputStreamWriter os = new OutputStreamWriter(outStream, "UTF-8");
+        ArrayList<Map.Entry<String, Long>> sorted = new ArrayList<Map.Entry<String, Long>>(m_counts.entrySet());
+        sorted.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? a.getKey().compareTo(b.getKey()) : Long.compare(b.getValue(), a.getValue()));
+        long total = Math.max(1, m_executed - m_length + 1);
+        for (int i = 0; i < Math.min(limit, sorted.size()); i++) {
+            Map.Entry<String, Long> entry = sorted.get(i);
+            os.write(String.format("%10d %6.2f%% %s\n", entry.getValue(), 100.0 * entry.getValue() / total, entry.getKey()));
+        }
+        os.flush();
+    }
+}
@@ -35,6 +35,7 @@ import compiler.ast.ASTUnaryExprNode;
 import compiler.ast.ASTVariableExprNode;
 import compiler.ast.ASTWhileStmtNode;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class Parser {
@@ -42,12 +43,15 @@ public class Parser {
     private CompileEnv m_compileEnv;
     private SymbolTable m_symbolTable;
     private FunctionTable m_funcTable;
+    // function whose body is parsed, owns the frame slots of block locals
+    private FunctionInfo m_currentFunction;
 
     public Parser(CompileEnv compileEnv, Lexer lexer) {
         m_compileEnv = compileEnv;
         m_lexer = lexer;
         m_symbolTable = m_compileEnv.getSymbolTable();
         m_funcTable = m_compileEnv.getFunctionTable();
+        m_currentFunction = m_compileEnv.getMainFunction();
     }
 
     public SymbolTable getSymbolTable() {
@@ -270,7 +274,7 @@ public class Parser {
         // Read argument list
         Token lParenToken = m_lexer.lookAhead();
         if (lParenToken.m_type != Token.Type.LPAREN) {
-            return new ASTVariableExprNode(identifier, getSymbolTable());
+            return new ASTVariableExprNode(identifier, resolveVariable(identifier));
         }
         
         m_lexer.advance();
@@ -280,17 +284,39 @@ public class Parser {
         return new ASTFuncCallExprNode(identifier, params);
     }
 
+    // program: LBRACE stmtlist RBRACE
+    // variables declared at this level are globals
+    ASTStmtNode getProgram() throws Exception {
+        ASTBlockStmtNode result = new ASTBlockStmtNode();
+        m_lexer.expect(Token.Type.LBRACE);
+        getStmtList(result);
+        m_lexer.expect(Token.Type.RBRACE);
+        // globals read by function bodies before must have been declared
+        Collection<String> undeclared = m_symbolTable.completeGlobals();
+        if (!undeclared.isEmpty()) {
+            throw new Exception("Die Variable \"" + undeclared.iterator().next() + "\" ist noch nicht deklariert worden!\n");
+        }
+        return result;
+    }
+
     // blockstmt: LBRACE stmtlist RBRACE
-    // stmtlist: stmt stmtlist
-    // stmtlist: epsilon
+    // variables declared inside are locals of the enclosing function
     ASTStmtNode getBlockStmt() throws Exception {
         ASTBlockStmtNode result = new ASTBlockStmtNode();
         m_lexer.expect(Token.Type.LBRACE);
+        m_symbolTable.enterScope(m_currentFunction);
+        getStmtList(result);
+        m_symbolTable.leaveScope();
+        m_lexer.expect(Token.Type.RBRACE);
+        return result;
+    }
+
+    // stmtlist: stmt stmtlist
+    // stmtlist: epsilon
+    void getStmtList(ASTBlockStmtNode result) throws Exception {
         while (m_lexer.lookAhead().m_type != Token.Type.RBRACE) {
             result.addStatement(getStmt());
         }
-        m_lexer.expect(Token.Type.RBRACE);
-        return result;
     }
     
     // block : BLOCK blockstmt
@@ -362,12 +388,12 @@ public class Parser {
         Token identifier = m_lexer.lookAhead();
         m_lexer.expect(TokenIntf.Type.IDENT);
         m_lexer.expect(TokenIntf.Type.SEMICOLON);
-        if(m_symbolTable.getSymbol(identifier.m_value) != null) {
+        if(m_symbolTable.isDeclaredInCurrentScope(identifier.m_value)) {
             throw new Exception("Das Symbol \"" + identifier.m_value + "\" ist bereits vergeben!\n");
         }
-        m_symbolTable.createSymbol(identifier.m_value);
+        Symbol symbol = m_symbolTable.createSymbol(identifier.m_value);
 
-        return new ASTDeclareNode(m_symbolTable, identifier.m_value);
+        return new ASTDeclareNode(symbol);
     }
     // assignStmt: IDENTIFER ASSIGN expr SEMICOLON
     ASTStmtNode getAssignStmt() throws Exception {
@@ -393,11 +419,24 @@ public class Parser {
         Token token = m_lexer.lookAhead();
         if (token.m_type == Token.Type.IDENT){
             m_lexer.advance();
-            return new ASTVariableExprNode(token.m_value, getSymbolTable());
+            return new ASTVariableExprNode(token.m_value, resolveVariable(token.m_value));
         }
         throw new Exception("Unexpected Statement");
 
     }
+
+    // look up a variable in the visible scopes, a function body may also
+    // read a global that the program block declares later
+    Symbol resolveVariable(String identifier) throws Exception {
+        Symbol symbol = m_symbolTable.getSymbol(identifier);
+        if (symbol == null && m_currentFunction != m_compileEnv.getMainFunction()) {
+            symbol = m_symbolTable.getForwardSymbol(identifier);
+        }
+        if (symbol == null) {
+            throw new Exception("Die Variable \"" + identifier + "\" ist noch nicht deklariert worden!\n");
+        }
+        return symbol;
+    }
  // while: WHILE LPAREN expression RPAREN blockstmt
  	ASTStmtNode getWhileStatement() throws Exception {
  		m_lexer.expect(TokenIntf.Type.WHILE);
@@ -481,10 +520,68 @@ public class Parser {
 
         // make entry in function table
         m_funcTable.createFunction(identifier, params);
+        FunctionInfo info = m_funcTable.getFunction(identifier);
+        if (m_compileEnv.isLazyFunctions()) {
+            // the body is parsed when the function is called first
+            info.m_bodyTokens = skipBlock();
+            return new ASTFuncDefStmtNode(identifier, params, null, null);
+        }
+        return getFuncDef(info);
+    }
+
+    // funcBody of a function whose signature is known
+    public ASTFuncDefStmtNode getFuncDef(FunctionInfo info) throws Exception {
+        String identifier = info.m_name;
+        List<String> params = info.varNames;
+
+        // Parameters are the first slots of the function frame,
+        // locals of the body follow them
+        FunctionInfo outerFunction = m_currentFunction;
+        m_currentFunction = info;
+        m_symbolTable.enterFunctionScope(info);
+        List<Symbol> paramSymbols = new ArrayList<Symbol>();
+        for (String param : params) {
+            if (m_symbolTable.isDeclaredInCurrentScope(param)) {
+                throw new Exception(String.format("Parameter \"%s\" defined twice in function \"%s\".", param, identifier));
+            }
+            paramSymbols.add(m_symbolTable.createSymbol(param));
+        }
         
-        // Read function body
+        // Read function body, its tokens are kept to parse it again,
+        // a function nested in another one is only part of the outer tokens
+        boolean record = !m_lexer.isRecording();
+        if (record) {
+            m_lexer.startRecording();
+        }
         ASTBlockStmtNode blockStmtExpr = getFuncBody(identifier);
-        return new ASTFuncDefStmtNode(identifier, params, blockStmtExpr);
+        if (record) {
+            info.m_bodyTokens = m_lexer.stopRecording();
+        }
+        m_symbolTable.leaveScope();
+        m_currentFunction = outerFunction;
+        return new ASTFuncDefStmtNode(identifier, params, paramSymbols, blockStmtExpr);
+    }
+
+    // the tokens of a block up to the matching RBRACE
+    private List<Token> skipBlock() throws Exception {
+        List<Token> tokens = new ArrayList<Token>();
+        if (m_lexer.lookAhead().m_type != Token.Type.LBRACE) {
+            m_lexer.expect(Token.Type.LBRACE);
+        }
+        int depth = 0;
+        do {
+            Token token = m_lexer.lookAhead();
+            if (token.m_type == Token.Type.EOF) {
+                m_lexer.expect(Token.Type.RBRACE);
+            } else if (token.m_type == Token.Type.LBRACE) {
+                depth++;
+            } else if (token.m_type == Token.Type.RBRACE) {
+                depth--;
+            }
+            tokens.add(token);
+            m_lexer.advance();
+        } while (depth > 0);
+        return tokens;
     }
 
     // argList: EPSILON
@@ -507,7 +604,7 @@ public class Parser {
         }
 
         // Throw error if arg list ended with comma instead of expression
-        if(expectingExpr) {
+        if(expectingExpr && !result.isEmpty()) {
             throw new Exception("Argument list must not end with a comma, but an expression.");
         }
 
@@ -524,10 +621,9 @@ public class Parser {
         boolean expectingIdent = true;
         while (m_lexer.lookAhead().m_type != Token.Type.RPAREN) {
             if (expectingIdent) {
-                ASTVariableExprNode variableNode = (ASTVariableExprNode) getVariableExpr();
-                String identifier = variableNode.identifier;
-                m_symbolTable.createSymbol(identifier);
-                result.add(identifier);
+                Token identifierToken = m_lexer.lookAhead();
+                m_lexer.expect(Token.Type.IDENT);
+                result.add(identifierToken.m_value);
             } else {
                 m_lexer.expect(Token.Type.COMMA);
             }
@@ -537,7 +633,7 @@ public class Parser {
         }
 
         // Throw error if param list ended with comma instead of identifier
-        if(expectingIdent) {
+        if(expectingIdent && !result.isEmpty()) {
             throw new Exception("Parameter list must not end with a comma, but an identifier.");
         }
         
@@ -0,0 +1,8 @@
+package compiler;
+
+public interface PassIntf {
+	/**
+	 *  run the pass on the program of the compile env it was registered with
+	 */
+	public void run() throws Exception;
+}
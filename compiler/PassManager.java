@@ -0,0 +1,179 @@
+package compiler;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a configurable sequence of optimization passes. Passes are
+ * registered by name together with the form of the program they work on,
+ * the pipeline is a list of pass names that is checked when it is set:
+ * AST passes come before codegen, SSA form has to be left again before
+ * the program is linked and passes that do not know phis only run
+ * outside of SSA form.
+ */
+public class PassManager {
+    public enum Kind {
+        // works on the AST before codegen
+        AST,
+        // works on the instruction blocks in any form
+        IR,
+        // works on the instruction blocks outside of SSA form
+        NON_SSA,
+        // works on the instruction blocks in SSA form
+        SSA,
+        // converts the instruction blocks into SSA form
+        ENTER_SSA,
+        // converts the instruction blocks out of SSA form
+        LEAVE_SSA,
+        // lowers the instruction blocks for execution, only other FINAL passes may follow
+        FINAL
+    }
+
+    private static class Pass {
+        Kind m_kind;
+        PassIntf m_pass;
+    }
+
+    private LinkedHashMap<String, Pass> m_passes;
+    private ArrayList<String> m_pipeline;
+    // checks the instruction blocks after every IR pass if set
+    private PassIntf m_verifier;
+    private boolean m_ssa;
+    // nanoseconds spent per pass, summed over all runs
+    private LinkedHashMap<String, Long> m_timings;
+
+    public PassManager() {
+        m_passes = new LinkedHashMap<String, Pass>();
+        m_pipeline = new ArrayList<String>();
+        m_timings = new LinkedHashMap<String, Long>();
+    }
+
+    public void register(String name, Kind kind, PassIntf pass) {
+        Pass entry = new Pass();
+        entry.m_kind = kind;
+        entry.m_pass = pass;
+        m_passes.put(name, entry);
+    }
+
+    public List<String> getPassNames() {
+        return new ArrayList<String>(m_passes.keySet());
+    }
+
+    public void setPipeline(List<String> pipeline) throws Exception {
+        boolean codegen = false;
+        boolean ssa = false;
+        boolean done = false;
+        for (String name : pipeline) {
+            Pass pass = m_passes.get(name);
+            if (pass == null) {
+                throw new Exception(String.format("Unknown pass \"%s\", known passes are %s", name, m_passes.keySet()));
+            }
+            if (pass.m_kind == Kind.AST) {
+                if (codegen) {
+                    throw new Exception(String.format("AST pass \"%s\" has to run before all IR passes", name));
+                }
+                continue;
+            }
+            codegen = true;
+            if (done && pass.m_kind != Kind.FINAL) {
+                throw new Exception(String.format("Pass \"%s\" cannot run after the final passes", name));
+            }
+            if ((pass.m_kind == Kind.SSA || pass.m_kind == Kind.LEAVE_SSA) && !ssa) {
+                throw new Exception(String.format("Pass \"%s\" needs the program in SSA form", name));
+            }
+            if ((pass.m_kind == Kind.ENTER_SSA || pass.m_kind == Kind.NON_SSA || pass.m_kind == Kind.FINAL) && ssa) {
+                throw new Exception(String.format("Pass \"%s\" cannot run in SSA form", name));
+            }
+            if (pass.m_kind == Kind.ENTER_SSA) {
+                ssa = true;
+            } else if (pass.m_kind == Kind.LEAVE_SSA) {
+                ssa = false;
+            }
+            done |= pass.m_kind == Kind.FINAL;
+        }
+        if (ssa) {
+            throw new Exception("The pipeline does not leave SSA form");
+        }
+        m_pipeline = new ArrayList<String>(pipeline);
+    }
+
+    public List<String> getPipeline() {
+        return m_pipeline;
+    }
+
+    public void setVerifier(PassIntf verifier) {
+        m_verifier = verifier;
+    }
+
+    /**
+     * true while the instruction blocks are in SSA form
+     */
+    public boolean isSsa() {
+        return m_ssa;
+    }
+
+    /**
+     * run the AST passes of the pipeline
+     */
+    public void runAstPasses() throws Exception {
+        for (String name : m_pipeline) {
+            Pass pass = m_passes.get(name);
+            if (pass.m_kind == Kind.AST) {
+                time(name, pass.m_pass);
+            }
+        }
+    }
+
+    /**
+     * run the IR passes of the pipeline
+     */
+    public void runIrPasses() throws Exception {
+        for (String name : m_pipeline) {
+            Pass pass = m_passes.get(name);
+            if (pass.m_kind == Kind.AST) {
+                continue;
+            }
+            time(name, pass.m_pass);
+            if (pass.m_kind == Kind.ENTER_SSA) {
+                m_ssa = true;
+            } else if (pass.m_kind == Kind.LEAVE_SSA) {
+                m_ssa = false;
+            }
+            if (m_verifier != null) {
+                try {
+                    time("verify", m_verifier);
+                } catch (Exception e) {
+                    throw new Exception(String.format("after pass \"%s\": %s", name, e.getMessage()), e);
+                }
+            }
+        }
+    }
+
+    private void time(String name, PassIntf pass) throws Exception {
+        long start = System.nanoTime();
+        try {
+            pass.run();
+        } finally {
+            m_timings.merge(name, System.nanoTime() - start, Long::sum);
+        }
+    }
+
+    public Map<String, Long> getTimings() {
+        return m_timings;
+    }
+
+    public void dumpTimings(OutputStream outStream) throws Exception {
+        OutputStreamWriter os = new OutputStreamWriter(outStream, "UTF-8");
+        long total = 0;
+        for (Map.Entry<String, Long> entry : m_timings.entrySet()) {
+            os.write(String.format("%-12s %10.3f ms\n", entry.getKey(), entry.getValue() / 1e6));
+            total += entry.getValue();
+        }
+        os.write(String.format("%-12s %10.3f ms\n", "total", total / 1e6));
+        os.flush();
+    }
+}
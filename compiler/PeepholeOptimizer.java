@@ -0,0 +1,254 @@
+package compiler;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Local rewrites of single instructions and short instruction sequences
+ * inside a block. An instruction that is replaced by another one is
+ * removed and all its users read the replacement instead.
+ */
+public class PeepholeOptimizer {
+    public enum Rule {
+        // x * 2^k -> x << k
+        MUL_POW2,
+        // x / 2^k -> x >> k if x cannot be negative
+        DIV_POW2,
+        // x + 0, 0 + x, x - 0 -> x
+        ADD_ZERO,
+        // x * 1, 1 * x, x / 1 -> x
+        MUL_ONE,
+        // x * 0, 0 * x -> 0
+        MUL_ZERO,
+        // -(-x) -> x, !(!x) -> x if x is 0 or 1
+        DOUBLE_NEGATION,
+        // JUMP COND !x -> JUMP COND x with swapped targets, e.g. for !(a == b)
+        JUMP_NOT,
+        // second read of a variable without a store in between
+        REDUNDANT_ACCESS
+    }
+
+    private List<InstrBlock> m_blockList;
+    private EnumSet<Rule> m_rules;
+    // users of a key read the value instead
+    private HashMap<InstrIntf, InstrIntf> m_replaced;
+
+    // applications per rule
+    public LinkedHashMap<Rule, Integer> m_counts;
+
+    public PeepholeOptimizer(List<InstrBlock> blockList, EnumSet<Rule> rules) {
+        m_blockList = blockList;
+        m_rules = rules;
+        m_replaced = new HashMap<InstrIntf, InstrIntf>();
+        m_counts = new LinkedHashMap<Rule, Integer>();
+        for (Rule rule : Rule.values()) {
+            m_counts.put(rule, 0);
+        }
+    }
+
+    public void run() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (InstrBlock block : m_blockList) {
+                changed |= optimizeBlock(block);
+            }
+        }
+        finish();
+    }
+
+    private InstrIntf resolve(InstrIntf instr) {
+        while (m_replaced.containsKey(instr)) {
+            instr = m_replaced.get(instr);
+        }
+        return instr;
+    }
+
+    private boolean apply(Rule rule) {
+        if (!m_rules.contains(rule)) {
+            return false;
+        }
+        m_counts.merge(rule, 1, Integer::sum);
+        return true;
+    }
+
+    private static Integer constant(InstrIntf instr) {
+        if (instr instanceof Instr.IntegerLiteralInstr) {
+            return ((Instr.IntegerLiteralInstr) instr).getConstant();
+        }
+        return null;
+    }
+
+    private static int log2(Integer value) {
+        if (value == null || value <= 0 || Integer.bitCount(value) != 1) {
+            return -1;
+        }
+        return Integer.numberOfTrailingZeros(value);
+    }
+
+    /**
+     * instructions producing 0 or 1 only
+     */
+    private static boolean isBoolean(InstrIntf instr) {
+        return instr instanceof Instr.CompareLessInstr || instr instanceof Instr.CompareGreaterInstr
+                || instr instanceof Instr.CompareEqualInstr || instr instanceof Instr.NotInstr;
+    }
+
+    private static boolean isNonNegative(InstrIntf instr) {
+        Integer value = constant(instr);
+        if (value != null) {
+            return value >= 0;
+        }
+        if (instr instanceof Instr.BitAndInstr) {
+            InstrIntf[] operands = instr.getOperands();
+            return isNonNegative(operands[0]) || isNonNegative(operands[1]);
+        }
+        if (instr instanceof Instr.ShiftRightInstr) {
+            return isNonNegative(instr.getOperands()[0]);
+        }
+        return isBoolean(instr);
+    }
+
+    private boolean optimizeBlock(InstrBlock block) {
+        boolean changed = false;
+        // last read of each global and local in this block
+        HashMap<Integer, InstrIntf> globals = new HashMap<Integer, InstrIntf>();
+        HashMap<Integer, InstrIntf> locals = new HashMap<Integer, InstrIntf>();
+        ListIterator<InstrIntf> iter = block.getIterator();
+        while (iter.hasNext()) {
+            InstrIntf instr = iter.next();
+            InstrIntf[] operands = instr.getOperands();
+            for (int i = 0; i < operands.length; i++) {
+                InstrIntf operand = resolve(operands[i]);
+                if (operand != operands[i]) {
+                    instr.setOperand(i, operand);
+                    operands[i] = operand;
+                }
+            }
+
+            // stores and calls end the life of remembered reads
+            if (instr instanceof Instr.VarAssignInstr) {
+                globals.remove(((Instr.VarAssignInstr) instr).getGlobalSlot());
+            } else if (instr instanceof Instr.LocalAssignInstr) {
+                locals.remove(((Instr.LocalAssignInstr) instr).getIndex());
+            } else if (instr instanceof Instr.CallInstr || instr instanceof Instr.TailCallInstr) {
+                globals.clear();
+            }
+
+            InstrIntf replacement = null;
+            if (instr instanceof Instr.VarAccessInstr) {
+                int slot = ((Instr.VarAccessInstr) instr).getGlobalSlot();
+                if (globals.containsKey(slot) && apply(Rule.REDUNDANT_ACCESS)) {
+                    replacement = globals.get(slot);
+                } else {
+                    globals.put(slot, instr);
+                }
+            } else if (instr instanceof Instr.LocalAccessInstr) {
+                int index = ((Instr.LocalAccessInstr) instr).getIndex();
+                if (locals.containsKey(index) && apply(Rule.REDUNDANT_ACCESS)) {
+                    replacement = locals.get(index);
+                } else {
+                    locals.put(index, instr);
+                }
+            } else if (instr instanceof Instr.JumpCondInstr) {
+                Instr.JumpCondInstr jump = (Instr.JumpCondInstr) instr;
+                if (jump.m_cond instanceof Instr.NotInstr && apply(Rule.JUMP_NOT)) {
+                    // the jump is replaced as it may be shared
+                    iter.set(new Instr.JumpCondInstr(jump.m_cond.getOperands()[0],
+                            jump.m_targetFalse, jump.m_targetTrue));
+                    changed = true;
+                }
+                continue;
+            } else {
+                replacement = simplify(instr, operands);
+            }
+
+            if (replacement == null) {
+                continue;
+            }
+            changed = true;
+            if (replacement.m_slot < 0 && replacement.hasResult()) {
+                // a new instruction takes over the place and slot of the old one
+                replacement.m_slot = instr.m_slot;
+                iter.set(replacement);
+            } else {
+                iter.remove();
+            }
+            m_replaced.put(instr, replacement);
+        }
+        return changed;
+    }
+
+    /**
+     * cheaper instruction computing the same value, null if there is none
+     */
+    private InstrIntf simplify(InstrIntf instr, InstrIntf[] operands) {
+        if (instr instanceof Instr.AddInstr) {
+            if (Integer.valueOf(0).equals(constant(operands[1])) && apply(Rule.ADD_ZERO)) {
+                return operands[0];
+            }
+            if (Integer.valueOf(0).equals(constant(operands[0])) && apply(Rule.ADD_ZERO)) {
+                return operands[1];
+            }
+        } else if (instr instanceof Instr.SubInstr) {
+            if (Integer.valueOf(0).equals(constant(operands[1])) && apply(Rule.ADD_ZERO)) {
+                return operands[0];
+            }
+        } else if (instr instanceof Instr.MulInstr) {
+            for (int i = 0; i < 2; i++) {
+                InstrIntf other = operands[1 - i];
+                Integer value = constant(operands[i]);
+                if (Integer.valueOf(0).equals(value) && apply(Rule.MUL_ZERO)) {
+                    return new Instr.IntegerLiteralInstr(0);
+                }
+                if (Integer.valueOf(1).equals(value) && apply(Rule.MUL_ONE)) {
+                    return other;
+                }
+                int shift = log2(value);
+                // 32 bit multiplication wraps exactly like the shift
+                if (shift > 0 && apply(Rule.MUL_POW2)) {
+                    return new Instr.ShiftLeftInstr(other, new Instr.IntegerLiteralInstr(shift));
+                }
+            }
+        } else if (instr instanceof Instr.DivInstr) {
+            Integer value = constant(operands[1]);
+            if (Integer.valueOf(1).equals(value) && apply(Rule.MUL_ONE)) {
+                return operands[0];
+            }
+            int shift = log2(value);
+            // division rounds towards zero, the shift towards minus infinity
+            if (shift > 0 && isNonNegative(operands[0]) && apply(Rule.DIV_POW2)) {
+                return new Instr.ShiftRightInstr(operands[0], new Instr.IntegerLiteralInstr(shift));
+            }
+        } else if (instr instanceof Instr.MinusInstr) {
+            if (operands[0] instanceof Instr.MinusInstr && apply(Rule.DOUBLE_NEGATION)) {
+                return operands[0].getOperands()[0];
+            }
+        } else if (instr instanceof Instr.NotInstr) {
+            if (operands[0] instanceof Instr.NotInstr && isBoolean(operands[0].getOperands()[0])
+                    && apply(Rule.DOUBLE_NEGATION)) {
+                return operands[0].getOperands()[0];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * let every instruction read the final replacement of its operands
+     */
+    private void finish() {
+        for (InstrBlock block : m_blockList) {
+            ListIterator<InstrIntf> iter = block.getIterator();
+            while (iter.hasNext()) {
+                InstrIntf instr = iter.next();
+                InstrIntf[] operands = instr.getOperands();
+                for (int i = 0; i < operands.length; i++) {
+                    instr.setOperand(i, resolve(operands[i]));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Lets instruction results share frame slots. Codegen gives every result
+ * a slot of its own, so frames grow with the size of a function. After a
+ * liveness analysis every result gets the live interval from its first to
+ * its last live position in the block layout and a linear scan assigns
+ * the slots, a slot is reused as soon as the interval of its previous
+ * value has ended. Parameters and variables keep their slots.
+ * Must run last as the instructions no longer have slots of their own.
+ */
+public class RegisterAllocator {
+    private List<InstrBlock> m_blockList;
+    private Map<InstrBlock, FunctionInfo> m_functions;
+
+    // frame sizes summed over all functions
+    public int m_slotsBefore;
+    public int m_slotsAfter;
+
+    private static class Interval {
+        InstrIntf m_value;
+        int m_start = Integer.MAX_VALUE;
+        int m_end = -1;
+
+        void cover(int position) {
+            m_start = Math.min(m_start, position);
+            m_end = Math.max(m_end, position);
+        }
+    }
+
+    public RegisterAllocator(List<InstrBlock> blockList, Map<InstrBlock, FunctionInfo> functions) {
+        m_blockList = blockList;
+        m_functions = functions;
+    }
+
+    public void run() {
+        for (Map.Entry<InstrBlock, FunctionInfo> entry : m_functions.entrySet()) {
+            allocate(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * executable instructions, code behind a terminator is never reached
+     */
+    private static ArrayList<InstrIntf> liveInstrs(InstrBlock block) {
+        ArrayList<InstrIntf> instrs = new ArrayList<InstrIntf>();
+        ListIterator<InstrIntf> iter = block.getIterator();
+        while (iter.hasNext()) {
+            InstrIntf instr = iter.next();
+            instrs.add(instr);
+            if (instr.isTerminator()) {
+                break;
+            }
+        }
+        return instrs;
+    }
+
+    /**
+     * value written by instr, lowered phis are written by moves
+     */
+    private static InstrIntf definedValue(InstrIntf instr) {
+        if (instr instanceof Instr.MoveInstr) {
+            return ((Instr.MoveInstr) instr).m_target;
+        }
+        return instr.hasResult() ? instr : null;
+    }
+
+    private void allocate(InstrBlock root, FunctionInfo function) {
+        FlowGraph graph = new FlowGraph(List.of(root));
+        // blocks of the function in layout order
+        ArrayList<InstrBlock> blocks = new ArrayList<InstrBlock>();
+        for (InstrBlock block : m_blockList) {
+            if (graph.contains(block)) {
+                blocks.add(block);
+            }
+        }
+
+        // slots addressed by index keep their place
+        HashSet<Integer> reserved = new HashSet<Integer>();
+        for (int i = 0; i < Math.max(function.varNames.size(), function.getNextLocal()); i++) {
+            reserved.add(i);
+        }
+        HashMap<InstrBlock, HashSet<InstrIntf>> uses = new HashMap<InstrBlock, HashSet<InstrIntf>>();
+        HashMap<InstrBlock, HashSet<InstrIntf>> defs = new HashMap<InstrBlock, HashSet<InstrIntf>>();
+        for (InstrBlock block : blocks) {
+            HashSet<InstrIntf> blockUses = new HashSet<InstrIntf>();
+            HashSet<InstrIntf> blockDefs = new HashSet<InstrIntf>();
+            for (InstrIntf instr : liveInstrs(block)) {
+                if (instr instanceof Instr.LocalAccessInstr) {
+                    reserved.add(((Instr.LocalAccessInstr) instr).getIndex());
+                } else if (instr instanceof Instr.LocalAssignInstr) {
+                    reserved.add(((Instr.LocalAssignInstr) instr).getIndex());
+                } else if (instr instanceof Instr.CountDownInstr) {
+                    reserved.add(((Instr.CountDownInstr) instr).getIndex());
+                } else if (instr instanceof Instr.IncrementLocalInstr) {
+                    reserved.add(((Instr.IncrementLocalInstr) instr).getIndex());
+                } else if (instr instanceof Instr.AddLocalInstr) {
+                    reserved.add(((Instr.AddLocalInstr) instr).getIndex());
+                }
+                for (InstrIntf operand : instr.getOperands()) {
+                    if (operand.hasResult() && !blockDefs.contains(operand)) {
+                        blockUses.add(operand);
+                    }
+                }
+                InstrIntf defined = definedValue(instr);
+                if (defined != null) {
+                    blockDefs.add(defined);
+                }
+            }
+            uses.put(block, blockUses);
+            defs.put(block, blockDefs);
+        }
+
+        // values live at the start of each block
+        HashMap<InstrBlock, HashSet<InstrIntf>> liveIn = new HashMap<InstrBlock, HashSet<InstrIntf>>();
+        for (InstrBlock block : blocks) {
+            liveIn.put(block, new HashSet<InstrIntf>(uses.get(block)));
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                InstrBlock block = blocks.get(i);
+                HashSet<InstrIntf> live = liveIn.get(block);
+                for (InstrBlock successor : block.getSuccessors()) {
+                    for (InstrIntf value : liveIn.get(successor)) {
+                        if (!defs.get(block).contains(value) && live.add(value)) {
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        // cover the positions where each value is live
+        LinkedHashMap<InstrIntf, Interval> intervals = new LinkedHashMap<InstrIntf, Interval>();
+        int position = 0;
+        for (InstrBlock block : blocks) {
+            int start = position;
+            for (InstrIntf value : liveIn.get(block)) {
+                interval(intervals, value).cover(start);
+            }
+            for (InstrIntf instr : liveInstrs(block)) {
+                for (InstrIntf operand : instr.getOperands()) {
+                    if (operand.hasResult()) {
+                        interval(intervals, operand).cover(position);
+                    }
+                }
+                InstrIntf defined = definedValue(instr);
+                if (defined != null) {
+                    interval(intervals, defined).cover(position);
+                }
+                position++;
+            }
+            for (InstrBlock successor : block.getSuccessors()) {
+                for (InstrIntf value : liveIn.get(successor)) {
+                    interval(intervals, value).cover(position - 1);
+                }
+            }
+        }
+
+        // linear scan, an interval ending at a position frees its slot
+        // for intervals starting behind it
+        ArrayList<Interval> sorted = new ArrayList<Interval>(intervals.values());
+        sorted.sort((a, b) -> Integer.compare(a.m_start, b.m_start));
+        ArrayList<Interval> active = new ArrayList<Interval>();
+        TreeSet<Integer> free = new TreeSet<Integer>();
+        int nextSlot = 0;
+        int frameSize = 0;
+        for (int slot : reserved) {
+            frameSize = Math.max(frameSize, slot + 1);
+        }
+        for (Interval interval : sorted) {
+            for (int i = active.size() - 1; i >= 0; i--) {
+                if (active.get(i).m_end < interval.m_start) {
+                    free.add(active.remove(i).m_value.m_slot);
+                }
+            }
+            int slot;
+            if (free.isEmpty()) {
+                while (reserved.contains(nextSlot)) {
+                    nextSlot++;
+                }
+                slot = nextSlot++;
+            } else {
+                slot = free.pollFirst();
+            }
+            interval.m_value.m_slot = slot;
+            frameSize = Math.max(frameSize, slot + 1);
+            active.add(interval);
+        }
+        m_slotsBefore += function.m_frameSize;
+        function.m_frameSize = frameSize;
+        m_slotsAfter += function.m_frameSize;
+    }
+
+    private static Interval interval(LinkedHashMap<InstrIntf, Interval> intervals, InstrIntf value) {
+        Interval interval = intervals.get(value);
+        if (interval == null) {
+            interval = new Interval();
+            interval.m_value = value;
+            intervals.put(value, interval);
+        }
+        return interval;
+    }
+}
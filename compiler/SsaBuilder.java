@@ -0,0 +1,246 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * Converts the local variables of every function into SSA form. Stores
+ * to a local disappear, reads use the value of the reaching store and
+ * blocks where different values meet get a phi. The algorithm follows
+ * Braun et al., "Simple and Efficient Construction of Static Single
+ * Assignment Form": blocks are visited in reverse postorder and a block
+ * is sealed once all its predecessors have been visited.
+ */
+public class SsaBuilder {
+    private List<InstrBlock> m_blockList;
+    private Map<InstrBlock, FunctionInfo> m_functions;
+    private int m_nextPrologue;
+
+    // state for the function being converted
+    private FunctionInfo m_function;
+    private FlowGraph m_graph;
+    private InstrBlock m_entry;
+    private HashMap<Integer, HashMap<InstrBlock, InstrIntf>> m_currentDef;
+    private HashMap<InstrBlock, HashMap<Integer, Instr.PhiInstr>> m_incompletePhis;
+    private HashSet<InstrBlock> m_filled;
+    private HashSet<InstrBlock> m_sealed;
+    // new phis and their blocks, they are inserted when the function is done
+    private LinkedHashMap<Instr.PhiInstr, InstrBlock> m_phis;
+    // reads of the frame in front of the entry block
+    private ArrayList<InstrIntf> m_entryLoads;
+    // removed reads and trivial phis, users read the value instead
+    private HashMap<InstrIntf, InstrIntf> m_replaced;
+
+    public int m_promotedLocals;
+    public int m_phiCount;
+
+    /**
+     * functions maps the entry block of the program and of every function
+     * to its frame layout, entries that are also jump targets get a new
+     * prologue block which is stored in the function
+     */
+    public SsaBuilder(List<InstrBlock> blockList, Map<InstrBlock, FunctionInfo> functions) {
+        m_blockList = blockList;
+        m_functions = functions;
+    }
+
+    public void run() {
+        for (Map.Entry<InstrBlock, FunctionInfo> entry : m_functions.entrySet()) {
+            convertFunction(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void convertFunction(InstrBlock entry, FunctionInfo function) {
+        m_function = function;
+        m_entry = entry;
+        if (!new FlowGraph(List.of(entry)).getPredecessors(entry).isEmpty()) {
+            // the values of the parameters are read where the function is entered
+            m_entry = new InstrBlock("prologue_" + m_nextPrologue++);
+            m_entry.addInstr(new Instr.JumpInstr(entry));
+            m_blockList.add(m_blockList.indexOf(entry), m_entry);
+            function.setEntry(m_entry);
+        }
+        m_graph = new FlowGraph(List.of(m_entry));
+        m_currentDef = new HashMap<Integer, HashMap<InstrBlock, InstrIntf>>();
+        m_incompletePhis = new HashMap<InstrBlock, HashMap<Integer, Instr.PhiInstr>>();
+        m_filled = new HashSet<InstrBlock>();
+        m_sealed = new HashSet<InstrBlock>();
+        m_phis = new LinkedHashMap<Instr.PhiInstr, InstrBlock>();
+        m_entryLoads = new ArrayList<InstrIntf>();
+        m_replaced = new HashMap<InstrIntf, InstrIntf>();
+        HashSet<Integer> locals = new HashSet<Integer>();
+        // loop counters are updated in the frame by COUNT DOWN and stay there
+        HashSet<Integer> counters = new HashSet<Integer>();
+        for (InstrBlock block : m_graph.getBlocks()) {
+            if (block.getLastInstr() instanceof Instr.CountDownInstr) {
+                counters.add(((Instr.CountDownInstr) block.getLastInstr()).getIndex());
+            }
+        }
+
+        for (InstrBlock block : m_graph.getBlocks()) {
+            trySeal(block);
+            ListIterator<InstrIntf> iter = block.getIterator();
+            while (iter.hasNext()) {
+                InstrIntf instr = iter.next();
+                if (instr instanceof Instr.LocalAssignInstr
+                        && !counters.contains(((Instr.LocalAssignInstr) instr).getIndex())) {
+                    Instr.LocalAssignInstr assign = (Instr.LocalAssignInstr) instr;
+                    writeVariable(assign.getIndex(), block, assign.m_expr);
+                    locals.add(assign.getIndex());
+                    iter.remove();
+                } else if (instr instanceof Instr.LocalAccessInstr
+                        && !counters.contains(((Instr.LocalAccessInstr) instr).getIndex())) {
+                    Instr.LocalAccessInstr access = (Instr.LocalAccessInstr) instr;
+                    if (block == m_entry && !m_currentDef.containsKey(access.getIndex())) {
+                        // first read in the entry block is the value passed in the frame
+                        writeVariable(access.getIndex(), block, access);
+                        continue;
+                    }
+                    m_replaced.put(access, readVariable(access.getIndex(), block));
+                    locals.add(access.getIndex());
+                    iter.remove();
+                }
+            }
+            m_filled.add(block);
+            for (InstrBlock successor : block.getSuccessors()) {
+                trySeal(successor);
+            }
+        }
+        removeTrivialPhis();
+        for (InstrIntf load : m_entryLoads) {
+            m_entry.insertInstr(0, load);
+        }
+        resolveOperands();
+        m_promotedLocals += locals.size();
+    }
+
+    private void trySeal(InstrBlock block) {
+        if (m_sealed.contains(block)) {
+            return;
+        }
+        for (InstrBlock predecessor : m_graph.getPredecessors(block)) {
+            if (!m_filled.contains(predecessor)) {
+                return;
+            }
+        }
+        m_sealed.add(block);
+        HashMap<Integer, Instr.PhiInstr> incomplete = m_incompletePhis.remove(block);
+        if (incomplete != null) {
+            for (Map.Entry<Integer, Instr.PhiInstr> entry : incomplete.entrySet()) {
+                addPhiOperands(entry.getKey(), entry.getValue(), block);
+            }
+        }
+    }
+
+    private void writeVariable(int variable, InstrBlock block, InstrIntf value) {
+        m_currentDef.computeIfAbsent(variable, v -> new HashMap<InstrBlock, InstrIntf>()).put(block, value);
+    }
+
+    private InstrIntf readVariable(int variable, InstrBlock block) {
+        HashMap<InstrBlock, InstrIntf> defs = m_currentDef.get(variable);
+        if (defs != null && defs.containsKey(block)) {
+            return defs.get(block);
+        }
+        InstrIntf value;
+        List<InstrBlock> predecessors = m_graph.getPredecessors(block);
+        if (!m_sealed.contains(block)) {
+            Instr.PhiInstr phi = newPhi(block);
+            m_incompletePhis.computeIfAbsent(block, b -> new HashMap<Integer, Instr.PhiInstr>()).put(variable, phi);
+            value = phi;
+        } else if (block == m_entry) {
+            // read the frame where the function is entered
+            value = new Instr.LocalAccessInstr("$local_" + variable, variable);
+            value.m_slot = m_function.allocSlot();
+            m_entryLoads.add(value);
+        } else if (predecessors.size() == 1) {
+            value = readVariable(variable, predecessors.get(0));
+        } else {
+            // a phi breaks cycles through loops
+            Instr.PhiInstr phi = newPhi(block);
+            writeVariable(variable, block, phi);
+            addPhiOperands(variable, phi, block);
+            value = phi;
+        }
+        writeVariable(variable, block, value);
+        return value;
+    }
+
+    private Instr.PhiInstr newPhi(InstrBlock block) {
+        Instr.PhiInstr phi = new Instr.PhiInstr();
+        phi.m_slot = m_function.allocSlot();
+        m_phis.put(phi, block);
+        return phi;
+    }
+
+    private void addPhiOperands(int variable, Instr.PhiInstr phi, InstrBlock block) {
+        for (InstrBlock predecessor : m_graph.getPredecessors(block)) {
+            phi.addOperand(predecessor, readVariable(variable, predecessor));
+        }
+    }
+
+    private InstrIntf resolve(InstrIntf instr) {
+        while (m_replaced.containsKey(instr)) {
+            instr = m_replaced.get(instr);
+        }
+        return instr;
+    }
+
+    /**
+     * a phi whose operands are all the same value or the phi itself is that
+     * value, the remaining phis are put at the start of their block
+     */
+    private void removeTrivialPhis() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Instr.PhiInstr phi : m_phis.keySet()) {
+                if (m_replaced.containsKey(phi)) {
+                    continue;
+                }
+                InstrIntf same = null;
+                boolean trivial = true;
+                for (InstrIntf operand : phi.m_values) {
+                    operand = resolve(operand);
+                    if (operand == phi || operand == same) {
+                        continue;
+                    }
+                    if (same != null) {
+                        trivial = false;
+                        break;
+                    }
+                    same = operand;
+                }
+                if (!trivial) {
+                    continue;
+                }
+                // only reachable through itself, the variable was never set
+                m_replaced.put(phi, same != null ? same : new Instr.IntegerLiteralInstr(0));
+                changed = true;
+            }
+        }
+        for (Map.Entry<Instr.PhiInstr, InstrBlock> entry : m_phis.entrySet()) {
+            if (!m_replaced.containsKey(entry.getKey())) {
+                entry.getValue().insertInstr(0, entry.getKey());
+                m_phiCount++;
+            }
+        }
+    }
+
+    private void resolveOperands() {
+        for (InstrBlock block : m_graph.getBlocks()) {
+            ListIterator<InstrIntf> iter = block.getIterator();
+            while (iter.hasNext()) {
+                InstrIntf instr = iter.next();
+                InstrIntf[] operands = instr.getOperands();
+                for (int i = 0; i < operands.length; i++) {
+                    instr.setOperand(i, resolve(operands[i]));
+                }
+            }
+        }
+    }
+}
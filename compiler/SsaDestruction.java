@@ -0,0 +1,118 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * Leaves SSA form by replacing every phi with moves at the end of its
+ * predecessors. Edges from a block with several successors into a block
+ * with phis get a block of their own, so the moves only run on that edge.
+ * The moves into the phis of one block happen at the same time, a phi
+ * that is read by another move is saved in a copy first.
+ */
+public class SsaDestruction {
+    private List<InstrBlock> m_blockList;
+    private Map<InstrBlock, FunctionInfo> m_functions;
+    private int m_nextSplit;
+
+    public int m_splitEdges;
+    public int m_moves;
+
+    public SsaDestruction(List<InstrBlock> blockList, Map<InstrBlock, FunctionInfo> functions) {
+        m_blockList = blockList;
+        m_functions = functions;
+    }
+
+    public void run() {
+        for (Map.Entry<InstrBlock, FunctionInfo> entry : m_functions.entrySet()) {
+            FlowGraph graph = new FlowGraph(List.of(entry.getKey()));
+            for (InstrBlock block : graph.getBlocks()) {
+                ArrayList<Instr.PhiInstr> phis = leadingPhis(block);
+                if (phis.isEmpty()) {
+                    continue;
+                }
+                for (InstrBlock predecessor : new LinkedHashSet<InstrBlock>(graph.getPredecessors(block))) {
+                    InstrBlock source = predecessor;
+                    if (predecessor.getSuccessors().size() > 1) {
+                        source = splitEdge(predecessor, block, phis);
+                    }
+                    insertMoves(source, phis, entry.getValue());
+                }
+                for (Instr.PhiInstr phi : phis) {
+                    block.removeInstr(phi);
+                }
+            }
+        }
+    }
+
+    private static ArrayList<Instr.PhiInstr> leadingPhis(InstrBlock block) {
+        ArrayList<Instr.PhiInstr> phis = new ArrayList<Instr.PhiInstr>();
+        ListIterator<InstrIntf> iter = block.getIterator();
+        while (iter.hasNext()) {
+            InstrIntf instr = iter.next();
+            if (!(instr instanceof Instr.PhiInstr)) {
+                break;
+            }
+            phis.add((Instr.PhiInstr) instr);
+        }
+        return phis;
+    }
+
+    private InstrBlock splitEdge(InstrBlock predecessor, InstrBlock block, ArrayList<Instr.PhiInstr> phis) {
+        InstrBlock split = new InstrBlock("split_" + m_nextSplit++);
+        split.addInstr(new Instr.JumpInstr(block));
+        predecessor.replaceSuccessor(block, split);
+        m_blockList.add(m_blockList.indexOf(block), split);
+        for (Instr.PhiInstr phi : phis) {
+            for (int i = 0; i < phi.m_predecessors.size(); i++) {
+                if (phi.m_predecessors.get(i) == predecessor) {
+                    phi.m_predecessors.set(i, split);
+                }
+            }
+        }
+        m_splitEdges++;
+        return split;
+    }
+
+    /**
+     * turn the parallel copy of the phi operands arriving from source into
+     * a sequence of moves in front of the terminator of source
+     */
+    private void insertMoves(InstrBlock source, ArrayList<Instr.PhiInstr> phis, FunctionInfo function) {
+        ArrayList<InstrIntf> targets = new ArrayList<InstrIntf>();
+        ArrayList<InstrIntf> values = new ArrayList<InstrIntf>();
+        for (Instr.PhiInstr phi : phis) {
+            InstrIntf value = phi.m_values.get(phi.m_predecessors.indexOf(source));
+            if (value != phi) {
+                targets.add(phi);
+                values.add(value);
+            }
+        }
+        while (!targets.isEmpty()) {
+            int ready = -1;
+            for (int i = 0; i < targets.size() && ready < 0; i++) {
+                if (!values.contains(targets.get(i))) {
+                    ready = i;
+                }
+            }
+            if (ready >= 0) {
+                source.insertBeforeTerminator(new Instr.MoveInstr(targets.remove(ready), values.remove(ready)));
+                m_moves++;
+                continue;
+            }
+            // every target is still read by another move, save one of them
+            InstrIntf saved = targets.get(0);
+            Instr.CopyInstr copy = new Instr.CopyInstr(saved);
+            copy.m_slot = function.allocSlot();
+            source.insertBeforeTerminator(copy);
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) == saved) {
+                    values.set(i, copy);
+                }
+            }
+        }
+    }
+}
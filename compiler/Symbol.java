@@ -3,6 +3,10 @@ package compiler;
 public class Symbol {
 	public String m_name;
 	public int m_number;
+	// index of this symbol in the global array or, for locals, in the frame
+	public int m_slot;
+	// true for parameters and variables declared inside a block
+	public boolean m_local;
 	public Symbol(String name, int number) {
 		m_name = name;
 		m_number = number;
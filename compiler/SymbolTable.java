@@ -1,23 +1,112 @@
 package compiler;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 
 public class SymbolTable implements SymbolTableIntf {
 
+	private static class Scope {
+		HashMap<String, Symbol> m_symbolMap = new HashMap<String, Symbol>();
+		// function owning the frame the locals of this scope live in
+		FunctionInfo m_function;
+		// first local slot of this scope, released when the scope is left
+		int m_firstSlot;
+		// lookup does not continue into the scopes of an enclosing function
+		boolean m_functionScope;
+	}
+
 	private HashMap<String, Symbol> m_symbolMap;
+	private ArrayList<Scope> m_scopes;
+	private int m_nextSlot;
+	// globals a function body reads before their DECLARE
+	private HashMap<String, Symbol> m_forwardSymbols;
+	// set once the program block is parsed, no further globals follow
+	private boolean m_globalsComplete;
 	
 	public SymbolTable() {
 		m_symbolMap = new HashMap<String, Symbol>();
+		m_scopes = new ArrayList<Scope>();
+		m_nextSlot = 0;
+		m_forwardSymbols = new HashMap<String, Symbol>();
 	}
 
 	public Symbol createSymbol(String symbolName) {
-		Symbol symbol = new Symbol(symbolName, 0);
+		if (!m_scopes.isEmpty()) {
+			Scope scope = m_scopes.get(m_scopes.size() - 1);
+			Symbol symbol = new Symbol(symbolName, 0);
+			symbol.m_local = true;
+			symbol.m_slot = scope.m_function.allocLocal();
+			scope.m_symbolMap.put(symbolName, symbol);
+			return symbol;
+		}
+		// keep the slot of an existing symbol, instructions may already refer to it
+		Symbol symbol = m_symbolMap.get(symbolName);
+		if (symbol != null) {
+			return symbol;
+		}
+		// function bodies may refer to the symbol already
+		symbol = m_forwardSymbols.remove(symbolName);
+		if (symbol == null) {
+			symbol = new Symbol(symbolName, 0);
+		}
+		symbol.m_slot = m_nextSlot++;
 		m_symbolMap.put(symbolName, symbol);
 		return symbol;
 	}
 
 	public Symbol getSymbol(String symbolName) {
+		for (int i = m_scopes.size() - 1; i >= 0; i--) {
+			Scope scope = m_scopes.get(i);
+			Symbol symbol = scope.m_symbolMap.get(symbolName);
+			if (symbol != null) {
+				return symbol;
+			}
+			if (scope.m_functionScope) {
+				break;
+			}
+		}
 		Symbol symbol = m_symbolMap.get(symbolName);
 		return symbol;
 	}
+
+	public Symbol getForwardSymbol(String symbolName) {
+		if (m_globalsComplete) {
+			return null;
+		}
+		return m_forwardSymbols.computeIfAbsent(symbolName, name -> new Symbol(name, 0));
+	}
+
+	public Collection<String> completeGlobals() {
+		m_globalsComplete = true;
+		return m_forwardSymbols.keySet();
+	}
+
+	public boolean isDeclaredInCurrentScope(String symbolName) {
+		if (m_scopes.isEmpty()) {
+			return m_symbolMap.containsKey(symbolName);
+		}
+		return m_scopes.get(m_scopes.size() - 1).m_symbolMap.containsKey(symbolName);
+	}
+
+	public void enterScope(FunctionInfo function) {
+		Scope scope = new Scope();
+		scope.m_function = function;
+		scope.m_firstSlot = function.getNextLocal();
+		m_scopes.add(scope);
+	}
+
+	public void enterFunctionScope(FunctionInfo function) {
+		enterScope(function);
+		m_scopes.get(m_scopes.size() - 1).m_functionScope = true;
+	}
+
+	public void leaveScope() {
+		Scope scope = m_scopes.remove(m_scopes.size() - 1);
+		scope.m_function.releaseLocals(scope.m_firstSlot);
+	}
+
+	public int getSlotCount() {
+		return m_nextSlot;
+	}
 }
@@ -1,13 +1,39 @@
 package compiler;
 
+import java.util.Collection;
+
 public interface SymbolTableIntf {
 
     // construct an empty symbol table	
 	// public SymbolTableIntf();
 
-	// creates a symbol with the given name
+	// creates a symbol with the given name in the innermost scope,
+	// a global symbol if no scope is open
 	public Symbol createSymbol(String symbolName);
 
 	// get symbol for given symbolName, returns null if no symbol with the given name was found
 	public Symbol getSymbol(String symbolName);
+
+	// global declared later in the program block, for a function body
+	// reading it before; null once the program block is parsed
+	public Symbol getForwardSymbol(String symbolName);
+
+	// end of the program block, returns the names of the globals read by
+	// function bodies that were never declared
+	public Collection<String> completeGlobals();
+
+	// true if the innermost scope already contains a symbol with the given name
+	public boolean isDeclaredInCurrentScope(String symbolName);
+
+	// open a block scope whose locals live in the frame of the given function
+	public void enterScope(FunctionInfo function);
+
+	// open the outermost scope of a function, symbols of enclosing scopes are not visible
+	public void enterFunctionScope(FunctionInfo function);
+
+	// close the innermost scope, its frame slots may be reused afterwards
+	public void leaveScope();
+
+	// number of global slots needed to hold all symbols at runtime
+	public int getSlotCount();
 }
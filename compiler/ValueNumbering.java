@@ -0,0 +1,197 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * Removes instructions that compute a value which is already available.
+ * Two pure instructions are equivalent if they are of the same kind and
+ * read the same operands, an instruction is replaced by an equivalent one
+ * in a dominating position. The table of known values is scoped along the
+ * dominator tree, so a value computed in a block is reused in all blocks
+ * it dominates. Reads of variables are only reused within a block up to
+ * the next store or call.
+ */
+public class ValueNumbering {
+    private List<InstrBlock> m_blockList;
+    private Map<InstrBlock, FunctionInfo> m_functions;
+    // users of a key read the value instead
+    private HashMap<InstrIntf, InstrIntf> m_replaced;
+    // number of every value that occurs as an operand
+    private IdentityHashMap<InstrIntf, Integer> m_numbers;
+    // values computed in the dominators of the current block
+    private HashMap<String, InstrIntf> m_available;
+
+    // removed instructions per function
+    public LinkedHashMap<String, Integer> m_eliminated;
+
+    public ValueNumbering(List<InstrBlock> blockList, Map<InstrBlock, FunctionInfo> functions) {
+        m_blockList = blockList;
+        m_functions = functions;
+        m_replaced = new HashMap<InstrIntf, InstrIntf>();
+        m_numbers = new IdentityHashMap<InstrIntf, Integer>();
+        m_available = new HashMap<String, InstrIntf>();
+        m_eliminated = new LinkedHashMap<String, Integer>();
+    }
+
+    public void run() {
+        for (Map.Entry<InstrBlock, FunctionInfo> entry : m_functions.entrySet()) {
+            FlowGraph graph = new FlowGraph(List.of(entry.getKey()));
+            HashMap<InstrBlock, ArrayList<InstrBlock>> children = new HashMap<InstrBlock, ArrayList<InstrBlock>>();
+            for (InstrBlock block : graph.getBlocks()) {
+                InstrBlock idom = graph.getIdom(block);
+                if (idom != null) {
+                    children.computeIfAbsent(idom, b -> new ArrayList<InstrBlock>()).add(block);
+                }
+            }
+            m_eliminated.put(entry.getValue().m_name, visit(entry.getKey(), children));
+        }
+        finish();
+    }
+
+    /**
+     * number the blocks of the dominator tree below root in preorder
+     * @return number of removed instructions
+     */
+    private int visit(InstrBlock root, HashMap<InstrBlock, ArrayList<InstrBlock>> children) {
+        int eliminated = 0;
+        // iterative to survive deep dominator trees, each entry knows the
+        // keys its block added so they can be dropped when it is left
+        ArrayList<InstrBlock> stack = new ArrayList<InstrBlock>();
+        ArrayList<ArrayList<String>> added = new ArrayList<ArrayList<String>>();
+        ArrayList<Integer> next = new ArrayList<Integer>();
+        stack.add(root);
+        added.add(new ArrayList<String>());
+        next.add(-1);
+        while (!stack.isEmpty()) {
+            int top = stack.size() - 1;
+            InstrBlock block = stack.get(top);
+            int index = next.get(top);
+            if (index < 0) {
+                eliminated += numberBlock(block, added.get(top));
+                index = 0;
+            }
+            List<InstrBlock> successors = children.getOrDefault(block, new ArrayList<InstrBlock>());
+            if (index < successors.size()) {
+                next.set(top, index + 1);
+                stack.add(successors.get(index));
+                added.add(new ArrayList<String>());
+                next.add(-1);
+            } else {
+                for (String key : added.get(top)) {
+                    m_available.remove(key);
+                }
+                stack.remove(top);
+                added.remove(top);
+                next.remove(top);
+            }
+        }
+        return eliminated;
+    }
+
+    private InstrIntf resolve(InstrIntf instr) {
+        while (m_replaced.containsKey(instr)) {
+            instr = m_replaced.get(instr);
+        }
+        return instr;
+    }
+
+    private String number(InstrIntf instr) {
+        if (instr instanceof Instr.IntegerLiteralInstr) {
+            return "#" + ((Instr.IntegerLiteralInstr) instr).getConstant();
+        }
+        return "v" + m_numbers.computeIfAbsent(instr, i -> m_numbers.size());
+    }
+
+    private static boolean isCommutative(InstrIntf instr) {
+        return instr instanceof Instr.AddInstr || instr instanceof Instr.MulInstr
+                || instr instanceof Instr.BitAndInstr || instr instanceof Instr.BitOrInstr
+                || instr instanceof Instr.CompareEqualInstr;
+    }
+
+    /**
+     * key of the value computed by instr, null if it cannot be shared
+     */
+    private String key(InstrIntf instr, InstrIntf[] operands) {
+        // phis depend on the edge
+        if (!instr.isPure() || !instr.hasResult() || instr instanceof Instr.PhiInstr) {
+            return null;
+        }
+        String[] numbers = new String[operands.length];
+        for (int i = 0; i < operands.length; i++) {
+            numbers[i] = number(operands[i]);
+        }
+        if (isCommutative(instr) && numbers[0].compareTo(numbers[1]) > 0) {
+            String swap = numbers[0];
+            numbers[0] = numbers[1];
+            numbers[1] = swap;
+        }
+        return instr.getClass().getSimpleName() + "(" + String.join(",", numbers) + ")";
+    }
+
+    private int numberBlock(InstrBlock block, ArrayList<String> added) {
+        int eliminated = 0;
+        // reads of globals and locals, only valid up to the next store
+        HashMap<Integer, InstrIntf> globals = new HashMap<Integer, InstrIntf>();
+        HashMap<Integer, InstrIntf> locals = new HashMap<Integer, InstrIntf>();
+        ListIterator<InstrIntf> iter = block.getIterator();
+        while (iter.hasNext()) {
+            InstrIntf instr = iter.next();
+            InstrIntf[] operands = instr.getOperands();
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = resolve(operands[i]);
+                instr.setOperand(i, operands[i]);
+            }
+
+            InstrIntf available = null;
+            if (instr instanceof Instr.VarAssignInstr) {
+                globals.remove(((Instr.VarAssignInstr) instr).getGlobalSlot());
+            } else if (instr instanceof Instr.LocalAssignInstr) {
+                locals.remove(((Instr.LocalAssignInstr) instr).getIndex());
+            } else if (instr instanceof Instr.CallInstr || instr instanceof Instr.TailCallInstr) {
+                globals.clear();
+            } else if (instr instanceof Instr.VarAccessInstr) {
+                available = globals.putIfAbsent(((Instr.VarAccessInstr) instr).getGlobalSlot(), instr);
+            } else if (instr instanceof Instr.LocalAccessInstr) {
+                available = locals.putIfAbsent(((Instr.LocalAccessInstr) instr).getIndex(), instr);
+            } else {
+                String key = key(instr, operands);
+                if (key != null) {
+                    available = m_available.get(key);
+                    if (available == null) {
+                        m_available.put(key, instr);
+                        added.add(key);
+                    }
+                }
+            }
+            if (available != null) {
+                m_replaced.put(instr, available);
+                iter.remove();
+                eliminated++;
+            }
+        }
+        return eliminated;
+    }
+
+    /**
+     * let every instruction read the final replacement of its operands,
+     * phis may refer to values of blocks that were numbered later
+     */
+    private void finish() {
+        for (InstrBlock block : m_blockList) {
+            ListIterator<InstrIntf> iter = block.getIterator();
+            while (iter.hasNext()) {
+                InstrIntf instr = iter.next();
+                InstrIntf[] operands = instr.getOperands();
+                for (int i = 0; i < operands.length; i++) {
+                    instr.setOperand(i, resolve(operands[i]));
+                }
+            }
+        }
+    }
+}
@@ -2,11 +2,12 @@ package compiler.ast;
 
 import compiler.Instr;
 import compiler.InstrBlock;
-import compiler.InstrIntf;
-import compiler.Symbol;
 import compiler.Token;
+import compiler.Symbol;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.Map;
 
 public class ASTAndOrExprNode extends ASTExprNode {
 
@@ -37,66 +38,90 @@ public class ASTAndOrExprNode extends ASTExprNode {
     @Override
     public int eval() {
         if (m_type == Token.Type.AND) {
-            if(m_lhs.eval() == 1){
-                return m_rhs.eval();
+            if(m_lhs.eval() != 0){
+                return m_rhs.eval() != 0 ? 1 : 0;
             }else{
                 return 0;
             }
         } else {
-            if(m_lhs.eval() == 1){
+            if(m_lhs.eval() != 0){
                 return 1;
             }else{
-                return m_rhs.eval();            
+                return m_rhs.eval() != 0 ? 1 : 0;
             }
         }
     }
 
     @Override
     public void codegen(compiler.CompileEnv env) throws Exception {
-        int thisIndex = m_index;
+        InstrBlock trueBlock = env.createBlock("true_condition_" + m_index);
+        InstrBlock falseBlock = env.createBlock("false_condition_" + m_index);
+        InstrBlock exit = env.createBlock("exit_condition_" + m_index);
+
+        // the short circuit jumps assign 1 or 0 to a slot of the current
+        // frame that the exit block reads
+        String resultName = "$andor_" + m_index;
+        int resultSlot = env.getCurrentFunction().allocSlot();
         m_index++;
-        InstrBlock left = env.createBlock("left_condition");
-        InstrBlock right = env.createBlock("right_condition");
-        InstrBlock result1 = env.createBlock("result_true");
-        InstrBlock result0 = env.createBlock("result_false");
-        InstrBlock exit = env.createBlock("exit");
-
-        Symbol symbol = env.getSymbolTable().createSymbol("$result_"+thisIndex);
-
-        InstrIntf jumptoExit = new Instr.JumpInstr(exit);
-        InstrIntf jumpIntoLeft = new Instr.JumpInstr(left);
-        env.addInstr(jumpIntoLeft); 
-
-        env.setCurrentBlock(left);
-        m_lhs.codegen(env);
-        if(m_type == Token.Type.AND){
-            var jumpIntoRight = new Instr.JumpCondInstr(m_lhs.getInstr(), right, result0);
-            env.addInstr(jumpIntoRight);
-        }else{
-            var jumpIntoRight = new Instr.JumpCondInstr(m_lhs.getInstr(), result1, right);
-            env.addInstr(jumpIntoRight);
-        }
+        condCodegen(env, trueBlock, falseBlock);
 
-        env.setCurrentBlock(right);
-        m_rhs.codegen(env);
-        var JumpIntoResult = new Instr.JumpCondInstr(m_rhs.getInstr(), result1, result0);
-        env.addInstr(JumpIntoResult);
-
-        env.setCurrentBlock(result0);
-        InstrIntf res0 = new Instr.IntegerLiteralInstr(0);
-        InstrIntf resul0 = new Instr.VarAssignInstr(res0, symbol);
-        env.addInstr(resul0);
-        env.addInstr(jumptoExit); 
-        
-        env.setCurrentBlock(result1);
-        InstrIntf res1 = new Instr.IntegerLiteralInstr(1);
-        InstrIntf resul1 = new Instr.VarAssignInstr(res1, symbol);
-        env.addInstr(resul1);
-        env.addInstr(jumptoExit); 
+        env.setCurrentBlock(trueBlock);
+        env.addInstr(new Instr.LocalAssignInstr(new Instr.IntegerLiteralInstr(1), resultName, resultSlot));
+        env.addInstr(new Instr.JumpInstr(exit));
+
+        env.setCurrentBlock(falseBlock);
+        env.addInstr(new Instr.LocalAssignInstr(new Instr.IntegerLiteralInstr(0), resultName, resultSlot));
+        env.addInstr(new Instr.JumpInstr(exit));
 
         env.setCurrentBlock(exit);
-        InstrIntf resultInstr = new Instr.VarAccessInstr("$result_" + thisIndex);
-        env.addInstr(resultInstr);
-        this.m_instr  = resultInstr;
+        m_instr = new Instr.LocalAccessInstr(resultName, resultSlot);
+        env.addInstr(m_instr);
+    }
+
+    @Override
+    public void condCodegen(compiler.CompileEnv env, InstrBlock trueBlock, InstrBlock falseBlock)
+            throws Exception {
+        // jump straight to the blocks of the consumer, no result is materialized
+        InstrBlock right = env.createBlock("right_condition_" + m_index);
+        m_index++;
+        if (m_type == Token.Type.AND) {
+            m_lhs.condCodegen(env, right, falseBlock);
+        } else {
+            m_lhs.condCodegen(env, trueBlock, right);
+        }
+        env.setCurrentBlock(right);
+        m_rhs.condCodegen(env, trueBlock, falseBlock);
+    }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(m_lhs, m_rhs);
+    }
+
+    @Override
+    public ASTExprNode fold(ConstantFolder folder) {
+        m_lhs = m_lhs.fold(folder);
+        m_rhs = m_rhs.fold(folder);
+        if (ConstantFolder.isConst(m_lhs)) {
+            // the left side alone decides the result, the right side is never evaluated
+            boolean lhs = m_lhs.eval() != 0;
+            if (m_type == Token.Type.AND && !lhs) {
+                return folder.literal(0);
+            }
+            if (m_type == Token.Type.OR && lhs) {
+                return folder.literal(1);
+            }
+            if (ConstantFolder.isConst(m_rhs)) {
+                return folder.literal(m_rhs.eval() != 0 ? 1 : 0);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+        ASTExprNode lhs = m_lhs.copy(rename);
+        ASTExprNode rhs = m_rhs.copy(rename);
+        return lhs == null || rhs == null ? null : new ASTAndOrExprNode(lhs, rhs, m_type);
     }
 }
@@ -2,12 +2,13 @@ package compiler.ast;
 
 import compiler.Instr;
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 import compiler.Symbol;
 
 public class ASTAssignStmtNode extends ASTStmtNode {
 
-    private final ASTExprNode exprNode;
+    private ASTExprNode exprNode;
     private final Symbol symbol;
 
     public ASTAssignStmtNode(ASTExprNode node, Symbol symbol) {
@@ -35,10 +36,34 @@ public class ASTAssignStmtNode extends ASTStmtNode {
         compiler.InstrIntf instrToEval = this.exprNode.getInstr();
 
         // create instruction object
-        m_instr = new Instr.VarAssignInstr(instrToEval, symbol);
+        // parameters and block locals live in the frame, everything else in the global slots
+        if (symbol.m_local) {
+            m_instr = new Instr.LocalAssignInstr(instrToEval, symbol.m_name, symbol.m_slot);
+        } else {
+            m_instr = new Instr.VarAssignInstr(instrToEval, symbol);
+        }
 
         // add instruction to current code block
         env.addInstr(m_instr);
     }
 
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    ASTExprNode getExpr() {
+        return exprNode;
+    }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(exprNode);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        exprNode = exprNode.fold(folder);
+        folder.assigned(symbol, exprNode);
+        return this;
+    }
 }
@@ -1,11 +1,12 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 import compiler.Instr.SubInstr;
 
 public class ASTBlockNode extends ASTStmtNode {
-    private final ASTStmtNode m_content;
+    private ASTStmtNode m_content;
     private static int m_index = 0;
 
     public ASTBlockNode(ASTStmtNode content) {
@@ -51,4 +52,15 @@ public class ASTBlockNode extends ASTStmtNode {
         // switch CompileEnv to exit block
         env.setCurrentBlock(exit);
     }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(m_content);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        m_content = m_content.fold(folder);
+        return this;
+    }
 }
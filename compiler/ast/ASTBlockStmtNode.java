@@ -44,4 +44,17 @@ public class ASTBlockStmtNode extends ASTStmtNode {
             }
         });
     }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return new ArrayList<ASTNode>(m_statements);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        for (int i = 0; i < m_statements.size(); i++) {
+            m_statements.set(i, m_statements.get(i).fold(folder));
+        }
+        return this;
+    }
 }
@@ -1,18 +1,29 @@
 package compiler.ast;
 
 import compiler.CompileEnv;
-import compiler.InstrIntf;
+import compiler.Instr;
+import compiler.InstrBlock;
+
+import java.util.List;
 
 public abstract class ASTCaseListElementStmtNode extends ASTStmtNode {
-    protected final ASTStmtNode blockStmt;
+    protected ASTStmtNode blockStmt;
 
     protected ASTCaseListElementStmtNode(ASTStmtNode blockStmt) {
         this.blockStmt = blockStmt;
     }
 
-    public abstract void codegen
-            (CompileEnv env, InstrIntf cond, compiler.InstrBlock switch_exit, int no)
-            throws Exception;
+    /**
+     * generate the statements of this element into exec, they continue
+     * at next or in the current block of env if next is null
+     */
+    public void codegen(CompileEnv env, InstrBlock exec, InstrBlock next) throws Exception {
+        env.setCurrentBlock(exec);
+        blockStmt.codegen(env);
+        if (next != null) {
+            env.addInstr(new Instr.JumpInstr(next));
+        }
+    }
 
     @Override
     public void execute() {
@@ -22,4 +33,15 @@ public abstract class ASTCaseListElementStmtNode extends ASTStmtNode {
     public void execute(int value) {
         this.execute();
     }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(blockStmt);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        blockStmt = blockStmt.fold(folder);
+        return this;
+    }
 }
@@ -2,14 +2,25 @@ package compiler.ast;
 
 import compiler.CompileEnv;
 import compiler.Instr;
+import compiler.InstrBlock;
+import compiler.InstrIntf;
 
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class ASTCaselistStmtNode extends ASTStmtNode {
+    // switches with up to this many distinct literals compare them one by one
+    static final int LINEAR_MAX_CASES = 4;
+    // a jump table is used if it has at most this many entries per literal
+    static final int TABLE_MAX_SLOTS_PER_CASE = 2;
+    private static int m_nextBlock = 0;
+
     private final List<ASTCaseListElementStmtNode> caseList = new ArrayList<>();
-    private final ASTExprNode expr;
+    private ASTExprNode expr;
 
     public ASTCaselistStmtNode(ASTExprNode expr) {
         this.expr = expr;
@@ -48,13 +59,91 @@ public class ASTCaselistStmtNode extends ASTStmtNode {
         expr.codegen(env);
         var exprInstr = expr.getInstr();
 
-        for (int i = 0; i <  caseList.size(); i++) {
-            var caseNode = caseList.get(i);
-            caseNode.codegen(env, exprInstr, exit, i);
+        // the first case with a matching literal wins, the default is last
+        TreeMap<Integer, InstrBlock> targets = new TreeMap<Integer, InstrBlock>();
+        List<InstrBlock> execs = new ArrayList<InstrBlock>();
+        InstrBlock noMatch = exit;
+        for (ASTCaseListElementStmtNode caseNode : caseList) {
+            InstrBlock exec = env.createBlock(caseNode instanceof ASTCaseStmtNode
+                    ? "case_exec_" + m_nextBlock++ : "case_default_exec");
+            execs.add(exec);
+            if (caseNode instanceof ASTCaseStmtNode) {
+                targets.putIfAbsent(((ASTCaseStmtNode) caseNode).getLiteral(), exec);
+            } else {
+                noMatch = exec;
+            }
         }
+        dispatch(env, exprInstr, new ArrayList<Map.Entry<Integer, InstrBlock>>(targets.entrySet()), noMatch);
 
-        compiler.InstrIntf jmpToExit = new compiler.Instr.JumpInstr(exit);
-        env.addInstr(jmpToExit);
+        for (int i = 0; i < caseList.size(); i++) {
+            caseList.get(i).codegen(env, execs.get(i), exit);
+        }
         env.setCurrentBlock(exit);
     }
+
+    /**
+     * jump from the current block to the target of value or to noMatch,
+     * cases are sorted by literal
+     */
+    private void dispatch(CompileEnv env, InstrIntf value, List<Map.Entry<Integer, InstrBlock>> cases,
+            InstrBlock noMatch) {
+        int count = cases.size();
+        if (count <= LINEAR_MAX_CASES) {
+            // compare one literal after the other
+            env.addStatistic("switch.linear", 1);
+            for (Map.Entry<Integer, InstrBlock> entry : cases) {
+                InstrBlock check = env.createBlock("case_check_" + m_nextBlock++);
+                var condMeetsLiteral = new Instr.CompareEqualInstr(value, new Instr.IntegerLiteralInstr(entry.getKey()));
+                env.addInstr(condMeetsLiteral);
+                env.addInstr(new Instr.JumpCondInstr(condMeetsLiteral, entry.getValue(), check));
+                env.setCurrentBlock(check);
+            }
+            env.addInstr(new Instr.JumpInstr(noMatch));
+            return;
+        }
+        int min = cases.get(0).getKey();
+        long range = (long) cases.get(count - 1).getKey() - min + 1;
+        if (range <= (long) count * TABLE_MAX_SLOTS_PER_CASE) {
+            // dense literals index a table, holes go to noMatch
+            env.addStatistic("switch.table", 1);
+            InstrBlock[] table = new InstrBlock[(int) range];
+            Arrays.fill(table, noMatch);
+            for (Map.Entry<Integer, InstrBlock> entry : cases) {
+                table[entry.getKey() - min] = entry.getValue();
+            }
+            env.addInstr(new Instr.JumpTableInstr(value, min, table, noMatch));
+            return;
+        }
+        // sparse literals, split at the middle one
+        env.addStatistic("switch.binary", 1);
+        int middle = count / 2;
+        InstrBlock lower = env.createBlock("case_lower_" + m_nextBlock++);
+        InstrBlock upper = env.createBlock("case_upper_" + m_nextBlock++);
+        var less = new Instr.CompareLessInstr(value, new Instr.IntegerLiteralInstr(cases.get(middle).getKey()));
+        env.addInstr(less);
+        env.addInstr(new Instr.JumpCondInstr(less, lower, upper));
+        env.setCurrentBlock(lower);
+        dispatch(env, value, cases.subList(0, middle), noMatch);
+        env.setCurrentBlock(upper);
+        dispatch(env, value, cases.subList(middle, count), noMatch);
+    }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        List<ASTNode> children = new ArrayList<ASTNode>();
+        children.add(expr);
+        children.addAll(caseList);
+        return children;
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        expr = expr.fold(folder);
+        folder.enterConditional();
+        for (ASTCaseListElementStmtNode caseNode : caseList) {
+            caseNode.fold(folder);
+        }
+        folder.leaveConditional();
+        return this;
+    }
 }
@@ -1,26 +1,39 @@
 package compiler.ast;
 
-import compiler.SymbolTable;
+import compiler.Instr;
+import compiler.Symbol;
 
 import java.io.OutputStreamWriter;
 
 public class ASTDeclareNode extends ASTStmtNode {
-    private final SymbolTable symbolTable;
-    private final String identifier;
+    private final Symbol symbol;
 
-    public ASTDeclareNode(SymbolTable symbolTable, String identifier) {
-        this.symbolTable = symbolTable;
-        this.identifier = identifier;
+    public ASTDeclareNode(Symbol symbol) {
+        this.symbol = symbol;
     }
 
     @Override
     public void print(OutputStreamWriter outStream, String indent) throws Exception {
         outStream.write(indent);
-        outStream.write("DeclareNode " + identifier + "\n");
+        outStream.write("DeclareNode " + symbol.m_name + "\n");
     }
 
     @Override
     public void execute() {
+        symbol.m_number = 0;
     }
 
+    @Override
+    public void codegen(compiler.CompileEnv env) throws Exception {
+        // globals start as 0, locals share frame slots with other
+        // scopes and recursive calls so they are cleared on declaration
+        if (symbol.m_local) {
+            m_instr = new Instr.LocalAssignInstr(new Instr.IntegerLiteralInstr(0), symbol.m_name, symbol.m_slot);
+            env.addInstr(m_instr);
+        }
+    }
+
+    Symbol getSymbol() {
+        return symbol;
+    }
 }
@@ -1,6 +1,7 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 import compiler.CompileEnv;
 import compiler.Instr;
@@ -46,11 +47,22 @@ public class ASTDoWhileStmtNode extends ASTStmtNode {
 		env.setCurrentBlock(do_begin);
 		this.blockstmt.codegen(env);
 
-		this.exprNode.codegen(env);
-		InstrIntf jumpToBody = new Instr.JumpCondInstr(exprNode.getInstr(), do_begin, exit);
-		env.addInstr(jumpToBody);
+		this.exprNode.condCodegen(env, do_begin, exit);
 
 		env.setCurrentBlock(exit);
 	}
 
+	@Override
+	public List<ASTNode> getChildren() {
+		return List.of(blockstmt, exprNode);
+	}
+
+	@Override
+	public ASTStmtNode fold(ConstantFolder folder) {
+		folder.enterConditional();
+		blockstmt = blockstmt.fold(folder);
+		exprNode = exprNode.fold(folder);
+		folder.leaveConditional();
+		return this;
+	}
 }
@@ -1,10 +1,11 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 public class ASTElseNode extends ASTStmtNode {
 
-    private final ASTStmtNode m_content;
+    private ASTStmtNode m_content;
     private static int m_index = 0;
 
     public ASTElseNode(ASTStmtNode m_content) {
@@ -25,6 +26,10 @@ public class ASTElseNode extends ASTStmtNode {
         m_content.execute();
     }
 
+    ASTStmtNode getContent() {
+        return m_content;
+    }
+
     @Override
     public void codegen(compiler.CompileEnv env) throws Exception {
         // create code blocks needed for control structure
@@ -50,4 +55,15 @@ public class ASTElseNode extends ASTStmtNode {
         // switch CompileEnv to exit block
         env.setCurrentBlock(exit);
     }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(m_content);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        m_content = m_content.fold(folder);
+        return this;
+    }
 }
@@ -1,16 +1,20 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 import compiler.Instr;
 import compiler.InstrBlock;
 import compiler.InstrIntf;
-import compiler.Symbol;
 
 public class ASTExecuteNTimesNode extends ASTStmtNode {
 	ASTExprNode m_n;
 	ASTBlockStmtNode m_block = new ASTBlockStmtNode();
 	private static int m_index = 0;
+	// iterations per round set by the LoopUnroller, -1 keeps the loop
+	private int m_unroll = -1;
+	// set by the LoopUnswitcher, null keeps the loop as it is
+	private ASTIfNode m_unswitch;
 
 	@Override
 	public void print(OutputStreamWriter outStream, String indent) throws Exception {
@@ -35,71 +39,79 @@ public class ASTExecuteNTimesNode extends ASTStmtNode {
 	public void addBlock(ASTBlockNode node) {
 		m_block.addStatement(node);
 	}
+
+	void setUnroll(int copies) {
+		m_unroll = copies;
+	}
+
+	void setUnswitch(ASTIfNode test) {
+		m_unswitch = test;
+	}
 	
     @Override
     public void codegen(compiler.CompileEnv env) throws Exception {
+        if (m_unswitch != null) {
+            ASTIfNode test = m_unswitch;
+            m_unswitch = null;
+            LoopUnswitcher.codegen(env, test, this::codegen, "loop_unswitch");
+            m_unswitch = test;
+            return;
+        }
 
         int thisIndex = m_index;
         m_index++;
 
+        if (m_unroll >= 0) {
+            LoopUnroller.codegen(env, m_block::codegen, Math.max(0, m_n.eval()), m_unroll, "loop_" + thisIndex);
+            return;
+        }
+
         // create code blocks needed for control structure
         InstrBlock body = env.createBlock("loop_body_" + thisIndex);
-        InstrBlock init = env.createBlock("loop_init_" + thisIndex);
-        InstrBlock head = env.createBlock("loop_head_" + thisIndex);
         InstrBlock exit = env.createBlock("loop_exit_" + thisIndex);
-        // current block of CompileEnv is our entry block
-        // terminate entry block with jump/conditional jump
-        // into block of control structure
 
-        Symbol symbol = env.getSymbolTable().createSymbol("$i_" + thisIndex);
+        // the trip count is evaluated once and counted down in a slot of
+        // the current frame, each iteration ends in a single COUNT DOWN
+        String counterName = "$i_" + thisIndex;
+        int counterSlot = env.getCurrentFunction().allocSlot();
 
         m_n.codegen(env);
         InstrIntf n = m_n.getInstr();
-
-
-        InstrIntf acc = new Instr.VarAccessInstr("$i_" + thisIndex);
-        InstrIntf one = new Instr.IntegerLiteralInstr(1);
-        InstrIntf inc = new Instr.AddInstr(acc, one);
-        InstrIntf ass = new Instr.VarAssignInstr(inc, symbol);
-
-        InstrIntf resetI = new Instr.VarAssignInstr(new Instr.IntegerLiteralInstr(0), symbol);
-
-        InstrIntf cond = new Instr.CompareLessInstr(acc, n);
-
-        InstrIntf jmpToInit = new Instr.JumpInstr(init);
-        InstrIntf jmpToHead = new Instr.JumpInstr(head);
-        InstrIntf jmpToBody = new Instr.JumpCondInstr(cond, body, exit);
-
-        env.addInstr(jmpToInit);
-
-        env.setCurrentBlock(init);
-        env.addInstr(resetI);
-        env.addInstr(jmpToHead);
-
-        env.setCurrentBlock(head);
-        env.addInstr(acc);
-        env.addInstr(cond);
-        env.addInstr(jmpToBody);
-        // for each block of control structure
-        // switch CompileEnv to the corresponding block
-        env.setCurrentBlock(body);
+        env.addInstr(new Instr.LocalAssignInstr(n, counterName, counterSlot));
+        if (ConstantFolder.isConst(m_n) && m_n.eval() > 0) {
+            env.addInstr(new Instr.JumpInstr(body));
+        } else {
+            InstrIntf positive = new Instr.CompareGreaterInstr(n, new Instr.IntegerLiteralInstr(0));
+            env.addInstr(positive);
+            env.addInstr(new Instr.JumpCondInstr(positive, body, exit));
+        }
 
         // trigger codegen of statements that
         // belong into this block
+        env.setCurrentBlock(body);
         m_block.codegen(env);
-        env.addInstr(acc);
-        env.addInstr(one);
-        env.addInstr(inc);
-        env.addInstr(ass);
-        env.addInstr(jmpToHead);
-
-        // terminate current block with jump
-        //compiler.InstrIntf jmpToExit = new compiler.Instr.JumpInstr(exit);
-        //env.addInstr(jmpToExit);
+        env.addInstr(new Instr.CountDownInstr(counterName, counterSlot, body, exit));
 
         // switch CompileEnv to exit block
         env.setCurrentBlock(exit);
 
     }
 
+	@Override
+	public List<ASTNode> getChildren() {
+		return List.of(m_n, m_block);
+	}
+
+	@Override
+	public ASTStmtNode fold(ConstantFolder folder) {
+		m_n = m_n.fold(folder);
+		if (ConstantFolder.isConst(m_n) && m_n.eval() <= 0) {
+			folder.removedBranch();
+			return new ASTBlockStmtNode();
+		}
+		folder.enterConditional();
+		m_block.fold(folder);
+		folder.leaveConditional();
+		return this;
+	}
 }
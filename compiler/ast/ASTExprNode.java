@@ -1,8 +1,33 @@
 package compiler.ast;
 
+import compiler.Symbol;
+
 import java.io.OutputStreamWriter;
+import java.util.Map;
 
 public abstract class ASTExprNode extends ASTNode {
     public abstract void print(OutputStreamWriter outStream, String indent) throws Exception;
     public abstract int eval();
+    /**
+     * fold constant sub expressions, returns the node replacing this one
+     */
+    public ASTExprNode fold(ConstantFolder folder) {
+        return this;
+    }
+    /**
+     * deep copy of this expression with variables replaced according to rename,
+     * null if the expression cannot be copied
+     */
+    public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+        return null;
+    }
+    /**
+     * generate code for a condition, continues in trueBlock if the value
+     * is not 0 and in falseBlock otherwise, terminates the current block
+     */
+    public void condCodegen(compiler.CompileEnv env, compiler.InstrBlock trueBlock,
+            compiler.InstrBlock falseBlock) throws Exception {
+        codegen(env);
+        env.addInstr(new compiler.Instr.JumpCondInstr(getInstr(), trueBlock, falseBlock));
+    }
 }
@@ -1,6 +1,7 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 
 public class ASTForNode extends ASTStmtNode {
@@ -11,6 +12,11 @@ public class ASTForNode extends ASTStmtNode {
     private ASTStmtNode m_loop_stmt;
     private ASTStmtNode m_body;
     private static int m_index = 0;
+    // set by the LoopUnroller, m_unroll iterations per round, -1 keeps the loop
+    private int m_tripCount;
+    private int m_unroll = -1;
+    // set by the LoopUnswitcher, null keeps the loop as it is
+    private ASTIfNode m_unswitch;
 
     public ASTForNode(ASTStmtNode preStmt, ASTExprNode cond, ASTStmtNode block, ASTStmtNode loopStmt) {
         m_pre_stmt = preStmt;
@@ -43,8 +49,53 @@ public class ASTForNode extends ASTStmtNode {
         }
     }
 
+    ASTStmtNode getInit() {
+        return m_pre_stmt;
+    }
+
+    ASTExprNode getCondition() {
+        return m_cond;
+    }
+
+    ASTStmtNode getStep() {
+        return m_loop_stmt;
+    }
+
+    ASTStmtNode getBody() {
+        return m_body;
+    }
+
+    void setUnroll(int tripCount, int copies) {
+        m_tripCount = tripCount;
+        m_unroll = copies;
+    }
+
+    void setUnswitch(ASTIfNode test) {
+        m_unswitch = test;
+    }
+
     @Override
     public void codegen(compiler.CompileEnv env) throws Exception {
+        m_pre_stmt.codegen(env);
+        if (m_unswitch != null) {
+            LoopUnswitcher.codegen(env, m_unswitch, this::codegenLoop, "For_unswitch");
+        } else {
+            codegenLoop(env);
+        }
+    }
+
+    /**
+     * the loop without the init statement
+     */
+    private void codegenLoop(compiler.CompileEnv env) throws Exception {
+        if (m_unroll >= 0) {
+            // the condition holds for exactly m_tripCount iterations
+            LoopUnroller.codegen(env, e -> {
+                m_body.codegen(e);
+                m_loop_stmt.codegen(e);
+            }, m_tripCount, m_unroll, "For_" + m_index++);
+            return;
+        }
 
         compiler.InstrBlock head = env.createBlock("For_head_" + m_index);
         compiler.InstrBlock body = env.createBlock("For_body_" + m_index);
@@ -53,7 +104,6 @@ public class ASTForNode extends ASTStmtNode {
 
         // current block of CompileEnv is our entry block
         // terminate entry block with jump/conditional jump
-        m_pre_stmt.codegen(env);
         compiler.InstrIntf jmpIntoCondition = new compiler.Instr.JumpInstr(head);   
         env.addInstr(jmpIntoCondition);
 
@@ -61,9 +111,7 @@ public class ASTForNode extends ASTStmtNode {
         // codegen for condition
         // check condition and do conditional Jump 
         env.setCurrentBlock(head);
-        m_cond.codegen(env);
-        compiler.Instr.JumpCondInstr condInstr = new compiler.Instr.JumpCondInstr(m_cond.getInstr(), body, exit);
-        head.addInstr(condInstr);
+        m_cond.condCodegen(env, body, exit);
 
         // body of for loop
         // generate code for body
@@ -77,4 +125,26 @@ public class ASTForNode extends ASTStmtNode {
 
         env.setCurrentBlock(exit);
     }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(m_pre_stmt, m_cond, m_body, m_loop_stmt);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        // the init statement runs exactly once
+        m_pre_stmt = m_pre_stmt.fold(folder);
+        folder.enterConditional();
+        m_cond = m_cond.fold(folder);
+        if (ConstantFolder.isConst(m_cond) && m_cond.eval() == 0) {
+            folder.leaveConditional();
+            folder.removedBranch();
+            return m_pre_stmt;
+        }
+        m_body = m_body.fold(folder);
+        m_loop_stmt = m_loop_stmt.fold(folder);
+        folder.leaveConditional();
+        return this;
+    }
 }
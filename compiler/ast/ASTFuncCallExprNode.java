@@ -3,16 +3,22 @@ package compiler.ast;
 import compiler.FunctionInfo;
 import compiler.Instr;
 import compiler.InstrIntf;
+import compiler.Symbol;
 
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 public class ASTFuncCallExprNode extends ASTExprNode {
     
     public String m_identifier;
     public List<ASTExprNode> m_args;
+    // set by the FunctionInliner, the arguments are stored in the
+    // renamed parameters and the copied body replaces the call
+    private List<Symbol> m_inlineParams;
+    private ASTExprNode m_inlineBody;
     
     public ASTFuncCallExprNode(String identifier, List<ASTExprNode> args) {
         m_identifier = identifier;
@@ -51,10 +57,85 @@ public class ASTFuncCallExprNode extends ASTExprNode {
             arg.codegen(env);
             instructions.add(arg.getInstr());
         }
+
+        if (m_inlineBody != null) {
+            // parameters become slots in the frame of the caller
+            for (int i = 0; i < m_inlineParams.size(); i++) {
+                Symbol param = m_inlineParams.get(i);
+                param.m_local = true;
+                param.m_slot = env.getCurrentFunction().allocSlot();
+                env.addInstr(new Instr.LocalAssignInstr(instructions.get(i), param.m_name, param.m_slot));
+            }
+            m_inlineBody.codegen(env);
+            m_instr = m_inlineBody.getInstr();
+            return;
+        }
         
         // Generate this instruction and add to environment
         m_instr = new Instr.CallInstr(info, instructions);
         env.addInstr(m_instr);
     }
     
+
+    @Override
+    public List<ASTNode> getChildren() {
+        List<ASTNode> children = new ArrayList<ASTNode>(m_args);
+        if (m_inlineBody != null) {
+            children.add(m_inlineBody);
+        }
+        return children;
+    }
+
+    @Override
+    public ASTExprNode fold(ConstantFolder folder) {
+        ListIterator<ASTExprNode> iter = m_args.listIterator();
+        boolean constArgs = true;
+        while (iter.hasNext()) {
+            ASTExprNode arg = iter.next().fold(folder);
+            iter.set(arg);
+            constArgs &= ConstantFolder.isConst(arg);
+        }
+        if (m_inlineBody != null) {
+            // the renamed parameters are never assigned in the body
+            for (int i = 0; i < m_args.size(); i++) {
+                if (ConstantFolder.isConst(m_args.get(i))) {
+                    folder.bind(m_inlineParams.get(i), m_args.get(i).eval());
+                }
+            }
+            m_inlineBody = m_inlineBody.fold(folder);
+            if (constArgs && ConstantFolder.isConst(m_inlineBody)) {
+                return m_inlineBody;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+        List<ASTExprNode> args = new ArrayList<ASTExprNode>();
+        for (ASTExprNode arg : m_args) {
+            ASTExprNode copy = arg.copy(rename);
+            if (copy == null) {
+                return null;
+            }
+            args.add(copy);
+        }
+        return new ASTFuncCallExprNode(m_identifier, args);
+    }
+
+    public boolean isInlined() {
+        return m_inlineBody != null;
+    }
+
+    /**
+     * replace the call by body, params are the renamed parameters used in body
+     */
+    void inline(List<Symbol> params, ASTExprNode body) {
+        m_inlineParams = params;
+        m_inlineBody = body;
+    }
+
+    ASTExprNode getInlineBody() {
+        return m_inlineBody;
+    }
 }
@@ -1,6 +1,7 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 public class ASTFuncCallStmtNode extends ASTStmtNode {
     
@@ -25,4 +26,14 @@ public class ASTFuncCallStmtNode extends ASTStmtNode {
         m_call.codegen(env);
     }
 
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(m_call);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        m_call.fold(folder);
+        return this;
+    }
 }
@@ -1,23 +1,41 @@
 package compiler.ast;
 
 import compiler.InstrBlock;
+import compiler.Symbol;
 
 import java.io.OutputStreamWriter;
 import java.util.List;
+import java.util.Map;
 
 public class ASTFuncDefStmtNode extends ASTStmtNode {
     
     private String m_identifier;
     private List<String> m_params;
+    private List<Symbol> m_paramSymbols;
+    // null while the function is compiled lazily, see CompileEnv.setLazyFunctions
     private ASTBlockStmtNode m_body;
     private static int m_index;
 
-    public ASTFuncDefStmtNode(String identifier, List<String> params, ASTBlockStmtNode body) {
+    public ASTFuncDefStmtNode(String identifier, List<String> params, List<Symbol> paramSymbols,
+            ASTBlockStmtNode body) {
         m_identifier = identifier;
         m_params = params;
+        m_paramSymbols = paramSymbols;
         m_body = body;
     }
 
+    public String getIdentifier() {
+        return m_identifier;
+    }
+
+    public List<Symbol> getParamSymbols() {
+        return m_paramSymbols;
+    }
+
+    public ASTBlockStmtNode getBody() {
+        return m_body;
+    }
+
     @Override
     public void print(OutputStreamWriter outStream, String indent) throws Exception {
         outStream.append(indent);
@@ -28,7 +46,9 @@ public class ASTFuncDefStmtNode extends ASTStmtNode {
         
         // Print children
         String childIndent = indent + "  ";
-        m_body.print(outStream, childIndent);
+        if (m_body != null) {
+            m_body.print(outStream, childIndent);
+        }
     }
 
     @Override
@@ -38,6 +58,10 @@ public class ASTFuncDefStmtNode extends ASTStmtNode {
 
     @Override
     public void codegen(compiler.CompileEnv env) {
+        if (m_body == null) {
+            return;
+        }
+
         // Store current block, so that statements following
         // the declaration can be assigned to it. The function
         // declaration is disconnected from the current block,
@@ -47,17 +71,41 @@ public class ASTFuncDefStmtNode extends ASTStmtNode {
         
         // Create function body block and assign to function info
         compiler.InstrBlock body = env.createBlock("function_" + m_index);
-        env.getFunctionTable().getFunction(m_identifier).setEntry(body);
+        compiler.FunctionInfo info = env.getFunctionTable().getFunction(m_identifier);
+        info.setEntry(body);
         m_index++;
 
         // Set function body as current block and assign
-        // statements inside body to that block
+        // statements inside body to that block, parameters
+        // are resolved against the function being generated
+        compiler.FunctionInfo outerFunction = env.getCurrentFunction();
+        env.setCurrentFunction(info);
         env.setCurrentBlock(body);
         m_body.codegen(env);
         
         // Set old context again since function declaration is done
         // and code following shall be assigned to old context
+        env.setCurrentFunction(outerFunction);
         env.setCurrentBlock(current);
     }
 
+    @Override
+    public List<ASTNode> getChildren() {
+        return m_body == null ? List.of() : List.of(m_body);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        if (m_body != null) {
+            m_body = (ASTBlockStmtNode) folder.foldFunctionBody(m_body);
+        }
+        return this;
+    }
+
+    /**
+     * fold the body of a specialised copy, params are never assigned in it
+     */
+    void foldSpecialized(ConstantFolder folder, Map<Symbol, Integer> params) {
+        m_body = (ASTBlockStmtNode) folder.foldFunctionBody(m_body, params);
+    }
 }
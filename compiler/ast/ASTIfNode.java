@@ -3,13 +3,20 @@ package compiler.ast;
 import compiler.Instr;
 
 import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ASTIfNode extends ASTStmtNode {
 
-    private final ASTExprNode m_ifCondition;
-    private final ASTStmtNode m_ifBody;
-    private final ASTStmtNode m_elseBlock;
+    private ASTExprNode m_ifCondition;
+    private ASTStmtNode m_ifBody;
+    private ASTStmtNode m_elseBlock;
     private static int m_index = 0;
+    // outcome of the condition in the version of a loop unswitched on
+    // this IF that is generated, null tests the condition
+    private Boolean m_assumed;
+    // a loop is unswitched on this IF
+    private boolean m_unswitched;
 
     public ASTIfNode(ASTExprNode m_ifCondition, ASTStmtNode m_ifBody, ASTStmtNode m_elseBlock) {
         this.m_ifCondition = m_ifCondition;
@@ -25,7 +32,7 @@ public class ASTIfNode extends ASTStmtNode {
         String childIndent = indent + "  ";
         m_ifCondition.print(outStream, childIndent);
         m_ifBody.print(outStream, childIndent);
-        if (m_elseBlock instanceof ASTIfNode || m_elseBlock instanceof ASTElseNode)
+        if (m_elseBlock != null)
             if (m_elseBlock instanceof ASTElseNode) {
                 m_elseBlock.print(outStream, childIndent);
             } else {
@@ -38,13 +45,46 @@ public class ASTIfNode extends ASTStmtNode {
     public void execute() {
         if (m_ifCondition.eval() != 0) {
             m_ifBody.execute();
-        } else if (m_elseBlock instanceof ASTIfNode || m_elseBlock instanceof ASTElseNode) {
+        } else if (m_elseBlock != null) {
             m_elseBlock.execute();
         }
     }
 
+    ASTExprNode getCondition() {
+        return m_ifCondition;
+    }
+
+    ASTStmtNode getBody() {
+        return m_ifBody;
+    }
+
+    ASTStmtNode getElse() {
+        return m_elseBlock;
+    }
+
+    void assume(Boolean outcome) {
+        m_assumed = outcome;
+    }
+
+    void setUnswitched() {
+        m_unswitched = true;
+    }
+
+    boolean isUnswitched() {
+        return m_unswitched;
+    }
+
     @Override
     public void codegen(compiler.CompileEnv env) throws Exception {
+        if (m_assumed != null) {
+            if (m_assumed) {
+                m_ifBody.codegen(env);
+            } else if (m_elseBlock != null) {
+                m_elseBlock.codegen(env);
+            }
+            return;
+        }
+
         // create code blocks needed for control structure
         compiler.InstrBlock condition = env.createBlock("if_condition_" + m_index);
         compiler.InstrBlock body = env.createBlock("if_body_" + m_index);
@@ -64,14 +104,9 @@ public class ASTIfNode extends ASTStmtNode {
         // trigger codegen of statements that
         // belong into this block
         env.setCurrentBlock(condition);
-        m_ifCondition.codegen(env);
-
         // terminate current block with jump
-        // Instr to check if condition is true
-        var conditionInstr = m_ifCondition.getInstr();
-
-        var jmpToBodyIfValueNotZero = new Instr.JumpCondInstr(conditionInstr, body, elseHead);
-        env.addInstr(jmpToBodyIfValueNotZero);
+        // to the body if condition is true
+        m_ifCondition.condCodegen(env, body, elseHead);
 
         env.setCurrentBlock(body);
         m_ifBody.codegen(env);
@@ -79,7 +114,7 @@ public class ASTIfNode extends ASTStmtNode {
         env.addInstr(jmpToExit);
 
         env.setCurrentBlock(elseHead);
-        if (m_elseBlock instanceof ASTIfNode || m_elseBlock instanceof ASTElseNode) {
+        if (m_elseBlock != null) {
             m_elseBlock.codegen(env);
         }
         env.addInstr(jmpToExit);
@@ -87,4 +122,37 @@ public class ASTIfNode extends ASTStmtNode {
         // switch CompileEnv to exit block
         env.setCurrentBlock(exit);
     }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        List<ASTNode> children = new ArrayList<ASTNode>();
+        children.add(m_ifCondition);
+        children.add(m_ifBody);
+        if (m_elseBlock != null) {
+            children.add(m_elseBlock);
+        }
+        return children;
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        m_ifCondition = m_ifCondition.fold(folder);
+        if (ConstantFolder.isConst(m_ifCondition)) {
+            // only the selected branch remains and it is executed unconditionally
+            folder.removedBranch();
+            if (m_ifCondition.eval() != 0) {
+                return m_ifBody.fold(folder);
+            } else if (m_elseBlock != null) {
+                return m_elseBlock.fold(folder);
+            }
+            return new ASTBlockStmtNode();
+        }
+        folder.enterConditional();
+        m_ifBody = m_ifBody.fold(folder);
+        if (m_elseBlock != null) {
+            m_elseBlock = m_elseBlock.fold(folder);
+        }
+        folder.leaveConditional();
+        return this;
+    }
 }
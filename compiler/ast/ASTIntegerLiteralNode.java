@@ -1,6 +1,9 @@
 package compiler.ast;
 
+import compiler.Symbol;
+
 import java.io.OutputStreamWriter;
+import java.util.Map;
 
 public class ASTIntegerLiteralNode extends ASTExprNode {
     public String m_value;
@@ -31,4 +34,8 @@ public class ASTIntegerLiteralNode extends ASTExprNode {
         env.addInstr(m_instr);
     }
 
+    @Override
+    public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+        return new ASTIntegerLiteralNode(m_value);
+    }
 }
@@ -81,4 +81,19 @@ public class ASTLoopNode extends ASTStmtNode {
         env.popLoopStack();
         env.setCurrentBlock(exit);
     }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return new ArrayList<ASTNode>(statements);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        folder.enterConditional();
+        for (int i = 0; i < statements.size(); i++) {
+            statements.set(i, statements.get(i).fold(folder));
+        }
+        folder.leaveConditional();
+        return this;
+    }
 }
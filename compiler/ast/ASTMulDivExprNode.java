@@ -1,6 +1,10 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.Map;
+
+import compiler.Symbol;
 
 public class ASTMulDivExprNode extends ASTExprNode {
 
@@ -57,4 +61,28 @@ public class ASTMulDivExprNode extends ASTExprNode {
         // add instruction to current code block
         env.addInstr(m_instr);
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(m_lhs, m_rhs);
+    }
+
+    @Override
+    public ASTExprNode fold(ConstantFolder folder) {
+        m_lhs = m_lhs.fold(folder);
+        m_rhs = m_rhs.fold(folder);
+        // keep a division by zero for runtime
+        if (ConstantFolder.isConst(m_lhs) && ConstantFolder.isConst(m_rhs)
+                && (m_type == compiler.Token.Type.MUL || m_rhs.eval() != 0)) {
+            return folder.literal(eval());
+        }
+        return this;
+    }
+
+    @Override
+    public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+        ASTExprNode lhs = m_lhs.copy(rename);
+        ASTExprNode rhs = m_rhs.copy(rename);
+        return lhs == null || rhs == null ? null : new ASTMulDivExprNode(lhs, rhs, m_type);
+    }
+}
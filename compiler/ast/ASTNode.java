@@ -1,9 +1,18 @@
 package compiler.ast;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ASTNode {
     protected compiler.InstrIntf m_instr; 
     public void codegen(compiler.CompileEnv env) throws Exception {}
     public compiler.InstrIntf getInstr() {
       return m_instr;   
     }
+    /**
+     * direct child nodes in evaluation order, used by analyses over the whole tree
+     */
+    public List<ASTNode> getChildren() {
+      return new ArrayList<ASTNode>();
+    }
 }
@@ -1,12 +1,15 @@
 package compiler.ast;
 
 import compiler.TokenIntf;
+import compiler.Symbol;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.Map;
 
 public class ASTParentheseExprNode extends ASTExprNode {
 
-    private final ASTExprNode inner;
+    private ASTExprNode inner;
 
     public ASTParentheseExprNode(ASTExprNode inner) {
         this.inner = inner;
@@ -30,5 +33,31 @@ public class ASTParentheseExprNode extends ASTExprNode {
         inner.codegen(env);
         m_instr = inner.m_instr;
     }
+
+    @Override
+    public void condCodegen(compiler.CompileEnv env, compiler.InstrBlock trueBlock,
+            compiler.InstrBlock falseBlock) throws Exception {
+        inner.condCodegen(env, trueBlock, falseBlock);
+    }
     
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(inner);
+    }
+
+    @Override
+    public ASTExprNode fold(ConstantFolder folder) {
+        inner = inner.fold(folder);
+        if (ConstantFolder.isConst(inner)) {
+            return inner;
+        }
+        return this;
+    }
+
+    @Override
+    public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+        ASTExprNode copy = inner.copy(rename);
+        return copy == null ? null : new ASTParentheseExprNode(copy);
+    }
 }
@@ -1,6 +1,10 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.Map;
+
+import compiler.Symbol;
 
 public class ASTPlusMinusExprNode extends ASTExprNode {
     public ASTExprNode m_lhs;
@@ -58,4 +62,25 @@ public class ASTPlusMinusExprNode extends ASTExprNode {
     }
    
 
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(m_lhs, m_rhs);
+    }
+
+    @Override
+    public ASTExprNode fold(ConstantFolder folder) {
+        m_lhs = m_lhs.fold(folder);
+        m_rhs = m_rhs.fold(folder);
+        if (ConstantFolder.isConst(m_lhs) && ConstantFolder.isConst(m_rhs)) {
+            return folder.literal(eval());
+        }
+        return this;
+    }
+
+    @Override
+    public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+        ASTExprNode lhs = m_lhs.copy(rename);
+        ASTExprNode rhs = m_rhs.copy(rename);
+        return lhs == null || rhs == null ? null : new ASTPlusMinusExprNode(lhs, rhs, m_type);
+    }
 }
@@ -1,9 +1,10 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 public class ASTPrintStmtNode extends ASTStmtNode {
-    private final ASTExprNode node;
+    private ASTExprNode node;
 
     public ASTPrintStmtNode(ASTExprNode node) {
         this.node = node;
@@ -37,4 +38,15 @@ public class ASTPrintStmtNode extends ASTStmtNode {
         // add instruction to current code block
         env.addInstr(m_instr);
     }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(node);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        node = node.fold(folder);
+        return this;
+    }
 }
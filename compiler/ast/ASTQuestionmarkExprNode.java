@@ -1,8 +1,11 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.Map;
 
 import compiler.CompileEnv;
+import compiler.Symbol;
 
 public class ASTQuestionmarkExprNode extends ASTExprNode {
 
@@ -53,4 +56,37 @@ public class ASTQuestionmarkExprNode extends ASTExprNode {
 		super.codegen(env);
 	}
 
+	@Override
+	public List<ASTNode> getChildren() {
+		return List.of(toEval, trueCase, falseCase);
+	}
+
+	@Override
+	public ASTExprNode fold(ConstantFolder folder) {
+		toEval = toEval.fold(folder);
+		trueCase = trueCase.fold(folder);
+		falseCase = falseCase.fold(folder);
+		if (ConstantFolder.isConst(toEval)) {
+			// both cases are evaluated at runtime, so the other case may only
+			// be dropped if that cannot fail or call anything
+			ASTExprNode selected = toEval.eval() != 0 ? trueCase : falseCase;
+			ASTExprNode dropped = toEval.eval() != 0 ? falseCase : trueCase;
+			if (ConstantFolder.isConst(dropped) || dropped instanceof ASTVariableExprNode) {
+				folder.removedBranch();
+				return selected;
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+		ASTExprNode cond = toEval.copy(rename);
+		ASTExprNode trueCopy = trueCase.copy(rename);
+		ASTExprNode falseCopy = falseCase.copy(rename);
+		if (cond == null || trueCopy == null || falseCopy == null) {
+			return null;
+		}
+		return new ASTQuestionmarkExprNode(cond, trueCopy, falseCopy);
+	}
 }
@@ -1,9 +1,12 @@
 package compiler.ast;
 
+import compiler.FunctionInfo;
 import compiler.Instr;
 import compiler.InstrIntf;
 
 import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ASTReturnStmtNode extends ASTStmtNode {
     
@@ -25,10 +28,63 @@ public class ASTReturnStmtNode extends ASTStmtNode {
     
     @Override
     public void codegen(compiler.CompileEnv env) throws Exception {
+        if (env.getOptLevel() >= 1 && tailCallCodegen(env)) {
+            return;
+        }
         m_target.codegen(env);
         InstrIntf result = m_target.getInstr();
         
         env.addInstr(new Instr.ReturnInstr(result));
     }
 
+    /**
+     * RETURN of a call inside a function does not need a frame of its own,
+     * returns false if this is no such tail call
+     */
+    private boolean tailCallCodegen(compiler.CompileEnv env) throws Exception {
+        if (!(m_target instanceof ASTFuncCallExprNode)) {
+            return false;
+        }
+        ASTFuncCallExprNode call = (ASTFuncCallExprNode) m_target;
+        FunctionInfo current = env.getCurrentFunction();
+        FunctionInfo callee = env.getFunctionTable().getFunction(call.m_identifier);
+        if (call.isInlined() || current == env.getMainFunction() || callee == null
+                || callee.varNames.size() != call.m_args.size()) {
+            return false;
+        }
+
+        // all arguments are computed before any parameter is overwritten
+        List<InstrIntf> args = new ArrayList<InstrIntf>();
+        for (ASTExprNode arg : call.m_args) {
+            arg.codegen(env);
+            args.add(arg.getInstr());
+        }
+        if (callee == current) {
+            // self tail call becomes a loop
+            for (int i = 0; i < args.size(); i++) {
+                env.addInstr(new Instr.LocalAssignInstr(args.get(i), callee.varNames.get(i), i));
+            }
+            env.addInstr(new Instr.JumpInstr(callee.m_body));
+            env.addStatistic("tailcall.self", 1);
+        } else {
+            env.addInstr(new Instr.TailCallInstr(callee, args));
+            env.addStatistic("tailcall.general", 1);
+        }
+        return true;
+    }
+
+    public ASTExprNode getExpr() {
+        return m_target;
+    }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(m_target);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        m_target = m_target.fold(folder);
+        return this;
+    }
 }
@@ -1,9 +1,12 @@
 package compiler.ast;
 
 import compiler.Token;
+import compiler.Symbol;
 
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.Map;
 
 public class ASTShiftExprNode extends ASTExprNode {
     private ASTExprNode m_lhs;
@@ -65,4 +68,26 @@ public class ASTShiftExprNode extends ASTExprNode {
     }
 
     
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(m_lhs, m_rhs);
+    }
+
+    @Override
+    public ASTExprNode fold(ConstantFolder folder) {
+        m_lhs = m_lhs.fold(folder);
+        m_rhs = m_rhs.fold(folder);
+        if (ConstantFolder.isConst(m_lhs) && ConstantFolder.isConst(m_rhs)) {
+            return folder.literal(eval());
+        }
+        return this;
+    }
+
+    @Override
+    public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+        ASTExprNode lhs = m_lhs.copy(rename);
+        ASTExprNode rhs = m_rhs.copy(rename);
+        return lhs == null || rhs == null ? null : new ASTShiftExprNode(lhs, rhs, m_type);
+    }
 }
@@ -5,4 +5,10 @@ import java.io.OutputStreamWriter;
 public abstract class ASTStmtNode extends ASTNode {
     public abstract void print(OutputStreamWriter outStream, String indent) throws Exception;
     public abstract void execute();
+    /**
+     * fold constant expressions and branches, returns the node replacing this one
+     */
+    public ASTStmtNode fold(ConstantFolder folder) {
+        return this;
+    }
 }
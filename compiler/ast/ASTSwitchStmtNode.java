@@ -3,9 +3,10 @@ package compiler.ast;
 import compiler.CompileEnv;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 public class ASTSwitchStmtNode extends ASTStmtNode {
-    private final ASTStmtNode caselist;
+    private ASTStmtNode caselist;
 
     public ASTSwitchStmtNode(ASTStmtNode caselist) {
         this.caselist = caselist;
@@ -28,4 +29,15 @@ public class ASTSwitchStmtNode extends ASTStmtNode {
     public void codegen(CompileEnv env) throws Exception {
         caselist.codegen(env);
     }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(caselist);
+    }
+
+    @Override
+    public ASTStmtNode fold(ConstantFolder folder) {
+        caselist = caselist.fold(folder);
+        return this;
+    }
 }
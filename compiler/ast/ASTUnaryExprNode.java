@@ -2,12 +2,15 @@ package compiler.ast;
 
 import compiler.Instr;
 import compiler.TokenIntf;
+import compiler.Symbol;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.Map;
 
 public class ASTUnaryExprNode extends ASTExprNode {
 
-    private final ASTExprNode parenthesisExpr;
+    private ASTExprNode parenthesisExpr;
     private final compiler.TokenIntf.Type type;
 
     public ASTUnaryExprNode(ASTExprNode parenthesisExpr, compiler.TokenIntf.Type type) {
@@ -63,4 +66,38 @@ public class ASTUnaryExprNode extends ASTExprNode {
         // add instruction to current code block
         env.addInstr(m_instr);
     }
+
+    @Override
+    public void condCodegen(compiler.CompileEnv env, compiler.InstrBlock trueBlock,
+            compiler.InstrBlock falseBlock) throws Exception {
+        switch (type) {
+            case NOT:
+                // a negated condition just swaps the targets
+                parenthesisExpr.condCodegen(env, falseBlock, trueBlock); break;
+            case MINUS:
+                super.condCodegen(env, trueBlock, falseBlock); break;
+            default:
+                parenthesisExpr.condCodegen(env, trueBlock, falseBlock);
+        }
+    }
+
+    @Override
+    public List<ASTNode> getChildren() {
+        return List.of(parenthesisExpr);
+    }
+
+    @Override
+    public ASTExprNode fold(ConstantFolder folder) {
+        parenthesisExpr = parenthesisExpr.fold(folder);
+        if (ConstantFolder.isConst(parenthesisExpr)) {
+            return folder.literal(eval());
+        }
+        return this;
+    }
+
+    @Override
+    public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+        ASTExprNode copy = parenthesisExpr.copy(rename);
+        return copy == null ? null : new ASTUnaryExprNode(copy, type);
+    }
 }
@@ -0,0 +1,61 @@
+package compiler.ast;
+
+import compiler.Symbol;
+import compiler.Token;
+
+/**
+ * Questions about AST sub trees that several passes ask.
+ */
+final class ASTUtils {
+
+    private ASTUtils() {
+    }
+
+    /**
+     * number of nodes of the sub tree, the passes limit their growth by it
+     */
+    static int size(ASTNode node) {
+        int size = 1;
+        for (ASTNode child : node.getChildren()) {
+            size += size(child);
+        }
+        return size;
+    }
+
+    /**
+     * true if evaluating the expression cannot fail or change anything
+     */
+    static boolean isSafe(ASTNode node) {
+        if (node instanceof ASTFuncCallExprNode
+                || node instanceof ASTMulDivExprNode && ((ASTMulDivExprNode) node).m_type != Token.Type.MUL) {
+            return false;
+        }
+        for (ASTNode child : node.getChildren()) {
+            if (!isSafe(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isVariable(ASTExprNode node, Symbol symbol) {
+        return node instanceof ASTVariableExprNode && ((ASTVariableExprNode) node).getSymbol() == symbol;
+    }
+
+    /**
+     * true if executing node may change the variable
+     */
+    static boolean writes(ASTNode node, Symbol symbol) {
+        if (node instanceof ASTAssignStmtNode && ((ASTAssignStmtNode) node).getSymbol() == symbol
+                || node instanceof ASTDeclareNode && ((ASTDeclareNode) node).getSymbol() == symbol
+                || !symbol.m_local && node instanceof ASTFuncCallExprNode && !((ASTFuncCallExprNode) node).isInlined()) {
+            return true;
+        }
+        for (ASTNode child : node.getChildren()) {
+            if (writes(child, symbol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
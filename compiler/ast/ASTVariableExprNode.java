@@ -1,14 +1,15 @@
 package compiler.ast;
 
 import compiler.Instr;
-import compiler.SymbolTable;
+import compiler.Symbol;
 
 import java.io.OutputStreamWriter;
+import java.util.Map;
 
 public class ASTVariableExprNode extends ASTExprNode{
 
     public String identifier;
-    private SymbolTable symbolTable;
+    private Symbol symbol;
 
     @Override
     public void print(OutputStreamWriter outStream, String indent) throws Exception {
@@ -18,22 +19,44 @@ public class ASTVariableExprNode extends ASTExprNode{
         outStream.write("\n");
     }
 
-    public ASTVariableExprNode(String identifier, SymbolTable symbolTable) {
+    public ASTVariableExprNode(String identifier, Symbol symbol) {
         this.identifier = identifier;
-        this.symbolTable = symbolTable;
+        this.symbol = symbol;
     }
 
     @Override
     public int eval() {
-        return symbolTable.getSymbol(this.identifier).m_number;
+        return symbol.m_number;
     }
 
     @Override
-    public void codegen(compiler.CompileEnv env) {
+    public void codegen(compiler.CompileEnv env) throws Exception {
         // create instruction object
-        m_instr = new Instr.VarAccessInstr(identifier);
+        // the symbol was resolved by the parser to a frame slot or a global slot
+        if (symbol.m_local) {
+            m_instr = new Instr.LocalAccessInstr(identifier, symbol.m_slot);
+        } else {
+            m_instr = new Instr.VarAccessInstr(symbol);
+        }
 
         // add instruction to current code block
         env.addInstr(m_instr);
     }
+
+    @Override
+    public ASTExprNode fold(ConstantFolder folder) {
+        if (folder.getConstant(symbol) != null) {
+            return folder.propagate(symbol);
+        }
+        return this;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public ASTExprNode copy(Map<Symbol, Symbol> rename) {
+        return new ASTVariableExprNode(identifier, rename.getOrDefault(symbol, symbol));
+    }
 }
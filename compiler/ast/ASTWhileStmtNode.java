@@ -1,6 +1,7 @@
 package compiler.ast;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 import compiler.CompileEnv;
 import compiler.Instr;
@@ -11,6 +12,8 @@ public class ASTWhileStmtNode extends ASTStmtNode {
 
 	private ASTExprNode exprNode;
 	private ASTStmtNode blockstmt;
+	// set by the LoopUnswitcher, null keeps the loop as it is
+	private ASTIfNode m_unswitch;
 
 	public ASTWhileStmtNode(ASTExprNode exprNode, ASTStmtNode blockstmt) {
 		this.exprNode = exprNode;
@@ -33,8 +36,27 @@ public class ASTWhileStmtNode extends ASTStmtNode {
 		}
 	}
 
+	ASTExprNode getCondition() {
+		return exprNode;
+	}
+
+	ASTStmtNode getBody() {
+		return blockstmt;
+	}
+
+	void setUnswitch(ASTIfNode test) {
+		m_unswitch = test;
+	}
+
 	@Override
 	public void codegen(CompileEnv env) throws Exception {
+		if (m_unswitch != null) {
+			ASTIfNode test = m_unswitch;
+			m_unswitch = null;
+			LoopUnswitcher.codegen(env, test, this::codegen, "while_unswitch");
+			m_unswitch = test;
+			return;
+		}
 		// trigger codegen for all child nodes
 		InstrBlock while_head = env.createBlock("while_head");
 		InstrBlock while_body = env.createBlock("while_body");
@@ -44,9 +66,7 @@ public class ASTWhileStmtNode extends ASTStmtNode {
 		env.addInstr(jumpToHead);
 
 		env.setCurrentBlock(while_head);
-		this.exprNode.codegen(env);
-		InstrIntf jumpToBody = new Instr.JumpCondInstr(exprNode.getInstr(), while_body, exit);
-		env.addInstr(jumpToBody);
+		this.exprNode.condCodegen(env, while_body, exit);
 
 		env.setCurrentBlock(while_body);
 		this.blockstmt.codegen(env);
@@ -55,4 +75,21 @@ public class ASTWhileStmtNode extends ASTStmtNode {
 		env.setCurrentBlock(exit);
 	}
 
+	@Override
+	public List<ASTNode> getChildren() {
+		return List.of(exprNode, blockstmt);
+	}
+
+	@Override
+	public ASTStmtNode fold(ConstantFolder folder) {
+		exprNode = exprNode.fold(folder);
+		if (ConstantFolder.isConst(exprNode) && exprNode.eval() == 0) {
+			folder.removedBranch();
+			return new ASTBlockStmtNode();
+		}
+		folder.enterConditional();
+		blockstmt = blockstmt.fold(folder);
+		folder.leaveConditional();
+		return this;
+	}
 }
@@ -0,0 +1,123 @@
+package compiler.ast;
+
+import compiler.Symbol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Folds constant sub trees of the AST before codegen and propagates
+ * variables that are assigned exactly once from a constant. Such an
+ * assignment is only propagated if it is executed unconditionally, i.e.
+ * not inside a branch or loop, and only into code that follows it in
+ * the same function body.
+ */
+public class ConstantFolder {
+    // number of assignments per variable in the whole program
+    private HashMap<Symbol, Integer> m_assignCount;
+    // variables with a known constant value at the current position
+    private HashMap<Symbol, Integer> m_constants;
+    // > 0 while inside a branch or loop body
+    private int m_conditionalDepth;
+    // true if function bodies are missing from the AST, their assignments are unknown
+    private boolean m_incomplete;
+
+    public int m_foldedExprs;
+    public int m_propagatedVars;
+    public int m_removedBranches;
+
+    public ConstantFolder(ASTNode root) {
+        m_assignCount = new HashMap<Symbol, Integer>();
+        m_constants = new HashMap<Symbol, Integer>();
+        m_conditionalDepth = 0;
+        countAssignments(root);
+    }
+
+    private void countAssignments(ASTNode node) {
+        if (node instanceof ASTAssignStmtNode) {
+            Symbol symbol = ((ASTAssignStmtNode) node).getSymbol();
+            m_assignCount.merge(symbol, 1, Integer::sum);
+        }
+        for (ASTNode child : node.getChildren()) {
+            countAssignments(child);
+        }
+    }
+
+    /**
+     * only propagate variables no function body can assign
+     */
+    public void setIncompleteProgram() {
+        m_incomplete = true;
+    }
+
+    public static boolean isConst(ASTExprNode node) {
+        return node instanceof ASTIntegerLiteralNode;
+    }
+
+    /**
+     * replace a constant expression by a literal
+     */
+    ASTExprNode literal(int value) {
+        m_foldedExprs++;
+        return new ASTIntegerLiteralNode(Integer.toString(value));
+    }
+
+    Integer getConstant(Symbol symbol) {
+        return m_constants.get(symbol);
+    }
+
+    ASTExprNode propagate(Symbol symbol) {
+        m_propagatedVars++;
+        return new ASTIntegerLiteralNode(Integer.toString(m_constants.get(symbol)));
+    }
+
+    void assigned(Symbol symbol, ASTExprNode value) {
+        if (m_conditionalDepth == 0 && isConst(value) && m_assignCount.get(symbol) == 1
+                && (symbol.m_local || !m_incomplete)) {
+            m_constants.put(symbol, value.eval());
+        }
+    }
+
+    /**
+     * value of a variable that is known to stay constant, like a parameter
+     * of an inlined call that is passed a constant
+     */
+    void bind(Symbol symbol, int value) {
+        m_constants.put(symbol, value);
+    }
+
+    void enterConditional() {
+        m_conditionalDepth++;
+    }
+
+    void leaveConditional() {
+        m_conditionalDepth--;
+    }
+
+    void removedBranch() {
+        m_removedBranches++;
+    }
+
+    /**
+     * function bodies may run before any assignment of the caller,
+     * so they start without known constants
+     */
+    ASTStmtNode foldFunctionBody(ASTStmtNode body) {
+        return foldFunctionBody(body, Map.of());
+    }
+
+    /**
+     * a function body whose parameters keep the given values, like in a
+     * copy specialised for constant arguments
+     */
+    ASTStmtNode foldFunctionBody(ASTStmtNode body, Map<Symbol, Integer> params) {
+        HashMap<Symbol, Integer> outerConstants = m_constants;
+        int outerDepth = m_conditionalDepth;
+        m_constants = new HashMap<Symbol, Integer>(params);
+        m_conditionalDepth = 0;
+        ASTStmtNode result = body.fold(this);
+        m_constants = outerConstants;
+        m_conditionalDepth = outerDepth;
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+package compiler.ast;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import compiler.Symbol;
+
+/**
+ * Removes what the program can do without before codegen: functions no
+ * call reaches from the top level block and variables that are written
+ * but never read. Calls are followed through the functions they reach,
+ * calls that were inlined need no function of their own. Assignments to
+ * an unread variable are dropped if their value has no side effects and
+ * cannot fail, its DECLARE goes once no assignment is left. Dropping an
+ * assignment may leave further variables unread, so that repeats until
+ * nothing changes. The slots of the removed variables stay allocated, the
+ * parser hands them out already.
+ */
+public class DeadDefinitionEliminator {
+    public int m_removedFunctions;
+    public int m_removedVariables;
+    public int m_removedAssignments;
+
+    public void run(ASTNode root) {
+        removeFunctions(root);
+        while (removeAssignments(root, readSymbols(root))) {
+            // the dropped assignments may have read other variables last
+        }
+        removeDeclarations(root, readSymbols(root), assignedSymbols(root));
+    }
+
+    private void removeFunctions(ASTNode root) {
+        HashMap<String, ASTFuncDefStmtNode> functions = new HashMap<String, ASTFuncDefStmtNode>();
+        collectFunctions(root, functions);
+        HashSet<ASTFuncDefStmtNode> reached = new HashSet<ASTFuncDefStmtNode>();
+        ArrayDeque<ASTNode> work = new ArrayDeque<ASTNode>();
+        work.add(root);
+        while (!work.isEmpty()) {
+            HashSet<String> called = new HashSet<String>();
+            collectCalls(work.poll(), called);
+            for (String identifier : called) {
+                ASTFuncDefStmtNode function = functions.get(identifier);
+                if (function != null && reached.add(function)) {
+                    work.add(function.getBody());
+                }
+            }
+        }
+        removeStatements(root, node -> node instanceof ASTFuncDefStmtNode && !reached.contains(node));
+        m_removedFunctions = functions.size() - reached.size();
+    }
+
+    private static void collectFunctions(ASTNode node, HashMap<String, ASTFuncDefStmtNode> functions) {
+        if (node instanceof ASTFuncDefStmtNode) {
+            functions.put(((ASTFuncDefStmtNode) node).getIdentifier(), (ASTFuncDefStmtNode) node);
+        }
+        for (ASTNode child : node.getChildren()) {
+            collectFunctions(child, functions);
+        }
+    }
+
+    /**
+     * functions called by the code of node, the functions defined in it
+     * are only called if something reaches them
+     */
+    private static void collectCalls(ASTNode node, HashSet<String> called) {
+        if (node instanceof ASTFuncCallExprNode && !((ASTFuncCallExprNode) node).isInlined()) {
+            called.add(((ASTFuncCallExprNode) node).m_identifier);
+        }
+        for (ASTNode child : node.getChildren()) {
+            if (!(child instanceof ASTFuncDefStmtNode)) {
+                collectCalls(child, called);
+            }
+        }
+    }
+
+    private static HashSet<Symbol> readSymbols(ASTNode root) {
+        HashSet<Symbol> result = new HashSet<Symbol>();
+        collectSymbols(root, ASTVariableExprNode.class, result);
+        return result;
+    }
+
+    private static HashSet<Symbol> assignedSymbols(ASTNode root) {
+        HashSet<Symbol> result = new HashSet<Symbol>();
+        collectSymbols(root, ASTAssignStmtNode.class, result);
+        return result;
+    }
+
+    private static void collectSymbols(ASTNode node, Class<? extends ASTNode> kind, HashSet<Symbol> symbols) {
+        if (node instanceof ASTVariableExprNode && kind == ASTVariableExprNode.class) {
+            symbols.add(((ASTVariableExprNode) node).getSymbol());
+        } else if (node instanceof ASTAssignStmtNode && kind == ASTAssignStmtNode.class) {
+            symbols.add(((ASTAssignStmtNode) node).getSymbol());
+        }
+        for (ASTNode child : node.getChildren()) {
+            collectSymbols(child, kind, symbols);
+        }
+    }
+
+    /**
+     * drops the assignments to variables that are not read, true if any
+     */
+    private boolean removeAssignments(ASTNode root, HashSet<Symbol> read) {
+        int removed = removeStatements(root, node -> node instanceof ASTAssignStmtNode
+                && !read.contains(((ASTAssignStmtNode) node).getSymbol())
+                && ASTUtils.isSafe(((ASTAssignStmtNode) node).getExpr()));
+        m_removedAssignments += removed;
+        return removed > 0;
+    }
+
+    /**
+     * drops the declarations of variables that are neither read nor
+     * assigned anymore
+     */
+    private void removeDeclarations(ASTNode root, HashSet<Symbol> read, HashSet<Symbol> assigned) {
+        m_removedVariables += removeStatements(root, node -> node instanceof ASTDeclareNode
+                && !read.contains(((ASTDeclareNode) node).getSymbol())
+                && !assigned.contains(((ASTDeclareNode) node).getSymbol()));
+    }
+
+    interface StatementFilter {
+        boolean remove(ASTStmtNode node);
+    }
+
+    /**
+     * removes the matching statements from all statement lists and returns
+     * their number, statements elsewhere stay
+     */
+    private static int removeStatements(ASTNode node, StatementFilter filter) {
+        int removed = 0;
+        if (node instanceof ASTBlockStmtNode) {
+            Iterator<ASTStmtNode> iter = ((ASTBlockStmtNode) node).m_statements.iterator();
+            while (iter.hasNext()) {
+                if (filter.remove(iter.next())) {
+                    iter.remove();
+                    removed++;
+                }
+            }
+        }
+        for (ASTNode child : node.getChildren()) {
+            removed += removeStatements(child, filter);
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,133 @@
+package compiler.ast;
+
+import compiler.Symbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Replaces calls of small functions by a copy of their body. A function can
+ * be inlined if its body consists of a single RETURN statement whose
+ * expression has at most threshold nodes and it cannot reach itself in the
+ * call graph. The parameters are renamed to fresh variables of the caller.
+ */
+public class FunctionInliner {
+    private int m_threshold;
+    private HashMap<String, ASTFuncDefStmtNode> m_functions;
+    // names of the functions called in the body of each function
+    private HashMap<String, HashSet<String>> m_callGraph;
+
+    // inlined call sites per function
+    public LinkedHashMap<String, Integer> m_inlinedSites;
+
+    public FunctionInliner(ASTNode root, int threshold) {
+        m_threshold = threshold;
+        m_functions = new HashMap<String, ASTFuncDefStmtNode>();
+        m_callGraph = new HashMap<String, HashSet<String>>();
+        m_inlinedSites = new LinkedHashMap<String, Integer>();
+        collectFunctions(root);
+        for (ASTFuncDefStmtNode function : m_functions.values()) {
+            HashSet<String> callees = new HashSet<String>();
+            collectCalls(function.getBody(), callees);
+            m_callGraph.put(function.getIdentifier(), callees);
+        }
+    }
+
+    private void collectFunctions(ASTNode node) {
+        if (node instanceof ASTFuncDefStmtNode) {
+            ASTFuncDefStmtNode function = (ASTFuncDefStmtNode) node;
+            // bodies that are compiled lazily are not known yet
+            if (function.getBody() != null) {
+                m_functions.put(function.getIdentifier(), function);
+            }
+        }
+        for (ASTNode child : node.getChildren()) {
+            collectFunctions(child);
+        }
+    }
+
+    private static void collectCalls(ASTNode node, HashSet<String> callees) {
+        if (node instanceof ASTFuncCallExprNode) {
+            callees.add(((ASTFuncCallExprNode) node).m_identifier);
+        }
+        for (ASTNode child : node.getChildren()) {
+            collectCalls(child, callees);
+        }
+    }
+
+    /**
+     * true if function is reachable from itself in the call graph
+     */
+    public boolean isRecursive(String function) {
+        HashSet<String> visited = new HashSet<String>();
+        ArrayList<String> workList = new ArrayList<String>(m_callGraph.get(function));
+        while (!workList.isEmpty()) {
+            String callee = workList.remove(workList.size() - 1);
+            if (callee.equals(function)) {
+                return true;
+            }
+            if (visited.add(callee) && m_callGraph.containsKey(callee)) {
+                workList.addAll(m_callGraph.get(callee));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the expression returned by function if it qualifies for inlining, null otherwise
+     */
+    private ASTExprNode inlineBody(ASTFuncDefStmtNode function) {
+        List<ASTStmtNode> statements = function.getBody().m_statements;
+        if (statements.size() != 1 || !(statements.get(0) instanceof ASTReturnStmtNode)) {
+            return null;
+        }
+        ASTExprNode expr = ((ASTReturnStmtNode) statements.get(0)).getExpr();
+        if (ASTUtils.size(expr) > m_threshold || isRecursive(function.getIdentifier())) {
+            return null;
+        }
+        return expr;
+    }
+
+    public void run(ASTNode root) {
+        inlineCalls(root);
+    }
+
+    private void inlineCalls(ASTNode node) {
+        for (ASTNode child : node.getChildren()) {
+            inlineCalls(child);
+        }
+        if (!(node instanceof ASTFuncCallExprNode)) {
+            return;
+        }
+        ASTFuncCallExprNode call = (ASTFuncCallExprNode) node;
+        ASTFuncDefStmtNode function = m_functions.get(call.m_identifier);
+        // calls with a wrong argument count keep failing at codegen
+        if (function == null || call.isInlined()
+                || function.getParamSymbols().size() != call.m_args.size()) {
+            return;
+        }
+        ASTExprNode body = inlineBody(function);
+        if (body == null) {
+            return;
+        }
+        HashMap<Symbol, Symbol> rename = new HashMap<Symbol, Symbol>();
+        List<Symbol> params = new ArrayList<Symbol>();
+        for (Symbol param : function.getParamSymbols()) {
+            Symbol renamed = new Symbol("$" + function.getIdentifier() + "_" + param.m_name, 0);
+            rename.put(param, renamed);
+            params.add(renamed);
+        }
+        ASTExprNode copy = body.copy(rename);
+        if (copy == null) {
+            return;
+        }
+        call.inline(params, copy);
+        m_inlinedSites.merge(function.getIdentifier(), 1, Integer::sum);
+        // calls in the copied body may be inlined in turn, this ends
+        // because inlined functions are not recursive
+        inlineCalls(copy);
+    }
+}
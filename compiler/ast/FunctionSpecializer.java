@@ -0,0 +1,190 @@
+package compiler.ast;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import compiler.Symbol;
+
+/**
+ * Calls a copy of a function that is specialised for the constant arguments
+ * of a call site, CALL scale(x, 16) becomes CALL scale$1(x, 16) where the
+ * body of scale$1 is folded with f = 16. A parameter only counts as
+ * constant if the body never assigns it. Call sites passing the same
+ * constants share one copy and each function gets at most maxClones
+ * copies, further call sites keep calling the original. The copies are
+ * parsed again from the tokens of the original body and appended to the
+ * top level block, calls in them are specialised in turn.
+ */
+public class FunctionSpecializer {
+    private int m_maxClones;
+    private Cloner m_cloner;
+    private HashMap<String, ASTFuncDefStmtNode> m_functions;
+    // identifiers of all functions defined in the program
+    private HashSet<String> m_defined;
+    // copy per function and constant arguments, e.g. "scale(?,16)"
+    private HashMap<String, ASTFuncDefStmtNode> m_clones;
+    private HashMap<String, Integer> m_cloneCount;
+
+    public int m_clonedFunctions;
+    public int m_specializedSites;
+
+    /**
+     * parses a fresh copy of the body of function under a new identifier,
+     * null if its tokens are not known
+     */
+    public interface Cloner {
+        ASTFuncDefStmtNode clone(String function, String identifier) throws Exception;
+    }
+
+    public FunctionSpecializer(int maxClones, Cloner cloner) {
+        m_maxClones = maxClones;
+        m_cloner = cloner;
+        m_functions = new HashMap<String, ASTFuncDefStmtNode>();
+        m_defined = new HashSet<String>();
+        m_clones = new HashMap<String, ASTFuncDefStmtNode>();
+        m_cloneCount = new HashMap<String, Integer>();
+    }
+
+    public void run(ASTNode root) throws Exception {
+        if (!(root instanceof ASTBlockStmtNode)) {
+            return;
+        }
+        collectFunctions(root);
+        ArrayDeque<ASTNode> work = new ArrayDeque<ASTNode>();
+        work.add(root);
+        while (!work.isEmpty()) {
+            specializeCalls((ASTBlockStmtNode) root, work.poll(), work);
+        }
+    }
+
+    private void collectFunctions(ASTNode node) {
+        if (node instanceof ASTFuncDefStmtNode) {
+            ASTFuncDefStmtNode function = (ASTFuncDefStmtNode) node;
+            m_defined.add(function.getIdentifier());
+            // parsing a nested function again would define it twice
+            if (function.getBody() != null && !containsFunction(function.getBody())) {
+                m_functions.put(function.getIdentifier(), function);
+            }
+        }
+        for (ASTNode child : node.getChildren()) {
+            collectFunctions(child);
+        }
+    }
+
+    private static boolean containsFunction(ASTNode node) {
+        for (ASTNode child : node.getChildren()) {
+            if (child instanceof ASTFuncDefStmtNode || containsFunction(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * redirects the calls in node to specialised copies, new copies are
+     * added to the program and to the work list
+     */
+    private void specializeCalls(ASTBlockStmtNode root, ASTNode node, ArrayDeque<ASTNode> work) throws Exception {
+        for (ASTNode child : node.getChildren()) {
+            specializeCalls(root, child, work);
+        }
+        if (!(node instanceof ASTFuncCallExprNode) || ((ASTFuncCallExprNode) node).isInlined()) {
+            return;
+        }
+        ASTFuncCallExprNode call = (ASTFuncCallExprNode) node;
+        ASTFuncDefStmtNode function = m_functions.get(call.m_identifier);
+        // calls with a wrong argument count keep failing at codegen
+        if (function == null || function.getParamSymbols().size() != call.m_args.size()) {
+            return;
+        }
+        String key = key(function, call.m_args);
+        if (key == null) {
+            return;
+        }
+        ASTFuncDefStmtNode clone = m_clones.get(key);
+        if (clone == null) {
+            clone = specialize(root, function, call.m_args);
+            if (clone == null) {
+                return;
+            }
+            m_clones.put(key, clone);
+            work.add(clone.getBody());
+        }
+        call.m_identifier = clone.getIdentifier();
+        m_specializedSites++;
+    }
+
+    /**
+     * the function and its constant arguments, null if there are none
+     */
+    private static String key(ASTFuncDefStmtNode function, List<ASTExprNode> args) {
+        StringBuilder key = new StringBuilder(function.getIdentifier()).append('(');
+        boolean constant = false;
+        for (int i = 0; i < args.size(); i++) {
+            if (i > 0) {
+                key.append(',');
+            }
+            if (isConstParam(function, i, args.get(i))) {
+                key.append(args.get(i).eval());
+                constant = true;
+            } else {
+                key.append('?');
+            }
+        }
+        return constant ? key.append(')').toString() : null;
+    }
+
+    private static boolean isConstParam(ASTFuncDefStmtNode function, int index, ASTExprNode arg) {
+        return ConstantFolder.isConst(arg)
+                && !ASTUtils.writes(function.getBody(), function.getParamSymbols().get(index));
+    }
+
+    private boolean callsDefined(ASTNode node) {
+        if (node instanceof ASTFuncCallExprNode && !((ASTFuncCallExprNode) node).isInlined()
+                && !m_defined.contains(((ASTFuncCallExprNode) node).m_identifier)) {
+            return false;
+        }
+        for (ASTNode child : node.getChildren()) {
+            if (!callsDefined(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * a new copy of function folded for the constant arguments, null if
+     * the function has used up its copies
+     */
+    private ASTFuncDefStmtNode specialize(ASTBlockStmtNode root, ASTFuncDefStmtNode function,
+            List<ASTExprNode> args) throws Exception {
+        int count = m_cloneCount.getOrDefault(function.getIdentifier(), 0);
+        if (count >= m_maxClones) {
+            return null;
+        }
+        ASTFuncDefStmtNode clone = m_cloner.clone(function.getIdentifier(), function.getIdentifier() + "$" + (count + 1));
+        // the original may inline a function that is pruned already, the
+        // copy would call it
+        if (clone == null || !callsDefined(clone.getBody())) {
+            return null;
+        }
+        m_cloneCount.put(function.getIdentifier(), count + 1);
+        m_clonedFunctions++;
+        HashMap<Symbol, Integer> params = new HashMap<Symbol, Integer>();
+        for (int i = 0; i < args.size(); i++) {
+            if (isConstParam(function, i, args.get(i))) {
+                params.put(clone.getParamSymbols().get(i), args.get(i).eval());
+            }
+        }
+        // the assignments of the copy count as well, a global it assigns
+        // is assigned in the original too
+        ASTBlockStmtNode program = new ASTBlockStmtNode();
+        program.addStatement(root);
+        program.addStatement(clone);
+        clone.foldSpecialized(new ConstantFolder(program), params);
+        root.addStatement(clone);
+        return clone;
+    }
+}
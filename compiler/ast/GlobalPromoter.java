@@ -0,0 +1,57 @@
+package compiler.ast;
+
+import compiler.FunctionInfo;
+import compiler.Symbol;
+
+import java.util.LinkedHashSet;
+
+/**
+ * Moves global variables that no function reads or writes into the frame
+ * of the main program. Only the main program can see them, so they behave
+ * like locals and later passes can keep them in SSA values.
+ */
+public class GlobalPromoter {
+    // globals used by the main program, in order of appearance
+    private LinkedHashSet<Symbol> m_globals;
+    // globals used inside of any function body
+    private LinkedHashSet<Symbol> m_shared;
+
+    public int m_promotedGlobals;
+
+    public GlobalPromoter(ASTNode root) {
+        m_globals = new LinkedHashSet<Symbol>();
+        m_shared = new LinkedHashSet<Symbol>();
+        collectGlobals(root, false);
+    }
+
+    private static Symbol getSymbol(ASTNode node) {
+        if (node instanceof ASTVariableExprNode) {
+            return ((ASTVariableExprNode) node).getSymbol();
+        }
+        if (node instanceof ASTAssignStmtNode) {
+            return ((ASTAssignStmtNode) node).getSymbol();
+        }
+        return null;
+    }
+
+    private void collectGlobals(ASTNode node, boolean inFunction) {
+        inFunction |= node instanceof ASTFuncDefStmtNode;
+        Symbol symbol = getSymbol(node);
+        if (symbol != null && !symbol.m_local) {
+            (inFunction ? m_shared : m_globals).add(symbol);
+        }
+        for (ASTNode child : node.getChildren()) {
+            collectGlobals(child, inFunction);
+        }
+    }
+
+    public void run(FunctionInfo main) {
+        for (Symbol symbol : m_globals) {
+            if (!m_shared.contains(symbol)) {
+                symbol.m_local = true;
+                symbol.m_slot = main.allocSlot();
+                m_promotedGlobals++;
+            }
+        }
+    }
+}
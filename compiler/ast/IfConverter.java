@@ -0,0 +1,116 @@
+package compiler.ast;
+
+import java.util.List;
+
+import compiler.Symbol;
+
+/**
+ * Turns IF statements that only select the value of one variable into a
+ * single assignment of a ?: expression,
+ *   IF (c) { x = a; } ELSE { x = b; }  ->  x = c ? a : b;
+ * A missing branch keeps the value, x = c ? a : x, and ELSE IF chains
+ * become nested selects. ?: evaluates all of its operands, so conditions
+ * and values must neither call functions nor divide and each value may
+ * have at most maxNodes AST nodes. The result is a single block without
+ * jumps instead of a diamond of blocks.
+ */
+public class IfConverter {
+    private int m_maxNodes;
+
+    public int m_convertedIfs;
+
+    /**
+     * assignment of a branch, m_symbol null for a branch that does nothing
+     */
+    private static class Branch {
+        Symbol m_symbol;
+        ASTExprNode m_value;
+    }
+
+    public IfConverter(int maxNodes) {
+        m_maxNodes = maxNodes;
+    }
+
+    public void run(ASTNode root) {
+        visit(root);
+    }
+
+    private void visit(ASTNode node) {
+        for (ASTNode child : node.getChildren()) {
+            visit(child);
+        }
+        // IF statements are statements of a statement list, replace them in place
+        if (node instanceof ASTBlockStmtNode) {
+            List<ASTStmtNode> statements = ((ASTBlockStmtNode) node).m_statements;
+            for (int i = 0; i < statements.size(); i++) {
+                if (!(statements.get(i) instanceof ASTIfNode)) {
+                    continue;
+                }
+                Branch select = convert((ASTIfNode) statements.get(i));
+                if (select != null && select.m_symbol != null) {
+                    statements.set(i, new ASTAssignStmtNode(select.m_value, select.m_symbol));
+                    m_convertedIfs++;
+                }
+            }
+        }
+    }
+
+    /**
+     * the IF as one assignment, null if it is no simple select
+     */
+    private Branch convert(ASTIfNode node) {
+        // a loop tests this condition once instead
+        if (node.isUnswitched() || !ASTUtils.isSafe(node.getCondition())) {
+            return null;
+        }
+        Branch thenBranch = branch(node.getBody());
+        Branch elseBranch = node.getElse() == null ? new Branch() : branch(node.getElse());
+        if (thenBranch == null || elseBranch == null) {
+            return null;
+        }
+        Symbol symbol = thenBranch.m_symbol != null ? thenBranch.m_symbol : elseBranch.m_symbol;
+        if (symbol == null || thenBranch.m_symbol != null && elseBranch.m_symbol != null
+                && thenBranch.m_symbol != elseBranch.m_symbol) {
+            return null;
+        }
+        Branch result = new Branch();
+        result.m_symbol = symbol;
+        result.m_value = new ASTQuestionmarkExprNode(node.getCondition(), value(thenBranch, symbol),
+                value(elseBranch, symbol));
+        return result;
+    }
+
+    /**
+     * the assignment a branch consists of, null if it does anything else
+     */
+    private Branch branch(ASTStmtNode node) {
+        if (node instanceof ASTElseNode) {
+            return branch(((ASTElseNode) node).getContent());
+        }
+        if (node instanceof ASTIfNode) {
+            return convert((ASTIfNode) node);
+        }
+        if (node instanceof ASTBlockStmtNode) {
+            List<ASTStmtNode> statements = ((ASTBlockStmtNode) node).m_statements;
+            if (statements.isEmpty()) {
+                return new Branch();
+            }
+            return statements.size() == 1 ? branch(statements.get(0)) : null;
+        }
+        if (node instanceof ASTAssignStmtNode) {
+            ASTAssignStmtNode assign = (ASTAssignStmtNode) node;
+            if (!ASTUtils.isSafe(assign.getExpr()) || ASTUtils.size(assign.getExpr()) > m_maxNodes) {
+                return null;
+            }
+            Branch result = new Branch();
+            result.m_symbol = assign.getSymbol();
+            result.m_value = assign.getExpr();
+            return result;
+        }
+        return null;
+    }
+
+    private static ASTExprNode value(Branch branch, Symbol symbol) {
+        return branch.m_symbol != null ? branch.m_value : new ASTVariableExprNode(symbol.m_name, symbol);
+    }
+}
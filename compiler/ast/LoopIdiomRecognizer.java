@@ -0,0 +1,302 @@
+package compiler.ast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import compiler.Symbol;
+import compiler.Token;
+
+/**
+ * Replaces loops that only accumulate values by the closed form of their
+ * result. Recognised are
+ *   EXECUTE n TIMES { s = s + e; ... }
+ *   WHILE (i < b) { s = s + e; ... i = i + 1; }
+ *   FOR (init; i < b; i = i + 1;) { s = s + e; ... }
+ * where every accumulation adds or subtracts a value e that the loop does
+ * not change or the induction variable i. The trip count t is computed
+ * once at runtime, s then grows by t * e, or by t * i + t * (t - 1) / 2
+ * for the induction variable. All products are taken modulo 2^32 like the
+ * additions of the loop, so the result wraps around just the same.
+ */
+public class LoopIdiomRecognizer {
+    // loops replaced by their closed form
+    public int m_replacedLoops;
+
+    /**
+     * s = s + e or s = s - e of a loop body
+     */
+    private static class Accumulation {
+        Symbol m_symbol;
+        String m_identifier;
+        ASTExprNode m_value;
+        boolean m_subtract;
+    }
+
+    public void run(ASTNode root) {
+        visit(root);
+    }
+
+    private void visit(ASTNode node) {
+        for (ASTNode child : node.getChildren()) {
+            visit(child);
+        }
+        // loops are statements of a statement list, replace them in place
+        if (node instanceof ASTBlockStmtNode) {
+            List<ASTStmtNode> statements = ((ASTBlockStmtNode) node).m_statements;
+            for (int i = 0; i < statements.size(); i++) {
+                ASTStmtNode closedForm = closedForm(statements.get(i));
+                if (closedForm != null) {
+                    statements.set(i, closedForm);
+                    m_replacedLoops++;
+                }
+            }
+        }
+    }
+
+    private static ASTStmtNode closedForm(ASTStmtNode node) {
+        if (node instanceof ASTExecuteNTimesNode) {
+            ASTExecuteNTimesNode loop = (ASTExecuteNTimesNode) node;
+            return closedForm(loop.m_n, loop.m_block);
+        } else if (node instanceof ASTWhileStmtNode) {
+            ASTWhileStmtNode loop = (ASTWhileStmtNode) node;
+            List<ASTStmtNode> body = statements(loop.getBody());
+            if (body == null || body.isEmpty()) {
+                return null;
+            }
+            ASTStmtNode step = body.remove(body.size() - 1);
+            return closedForm(new ASTBlockStmtNode(), loop.getCondition(), body, step);
+        } else if (node instanceof ASTForNode) {
+            ASTForNode loop = (ASTForNode) node;
+            List<ASTStmtNode> body = statements(loop.getBody());
+            if (body == null) {
+                return null;
+            }
+            return closedForm(loop.getInit(), loop.getCondition(), body, loop.getStep());
+        }
+        return null;
+    }
+
+    /**
+     * EXECUTE n TIMES with accumulations of values the loop does not change
+     */
+    private static ASTStmtNode closedForm(ASTExprNode n, ASTStmtNode block) {
+        List<ASTStmtNode> body = statements(block);
+        List<Accumulation> accumulations = body == null ? null : accumulations(body);
+        if (accumulations == null) {
+            return null;
+        }
+        HashSet<Symbol> written = written(accumulations);
+        // n is evaluated once before the loop, the copies must read the same
+        if (!isInvariant(n, written)) {
+            return null;
+        }
+        ASTBlockStmtNode result = new ASTBlockStmtNode();
+        for (Accumulation accumulation : accumulations) {
+            if (!isInvariant(accumulation.m_value, written)) {
+                return null;
+            }
+            ASTExprNode count = ConstantFolder.isConst(n)
+                    ? literal(Math.max(0, n.eval()))
+                    : new ASTQuestionmarkExprNode(new ASTCompareExprNode(copy(n), literal(0), Token.Type.GREATER),
+                            copy(n), literal(0));
+            result.addStatement(accumulate(accumulation, multiply(count, copy(accumulation.m_value))));
+        }
+        return result;
+    }
+
+    /**
+     * init; WHILE (i < b) { accumulations; i = i + 1; }
+     */
+    private static ASTStmtNode closedForm(ASTStmtNode init, ASTExprNode condition, List<ASTStmtNode> body,
+            ASTStmtNode step) {
+        Accumulation induction = accumulation(step);
+        if (induction == null || induction.m_subtract || !ConstantFolder.isConst(induction.m_value)
+                || induction.m_value.eval() != 1 || !(condition instanceof ASTCompareExprNode)) {
+            return null;
+        }
+        ASTCompareExprNode compare = (ASTCompareExprNode) condition;
+        Symbol symbol = induction.m_symbol;
+        if (compare.m_type != Token.Type.LESS || !ASTUtils.isVariable(compare.m_lhs, symbol)) {
+            return null;
+        }
+        List<Accumulation> accumulations = accumulations(body);
+        if (accumulations == null) {
+            return null;
+        }
+        HashSet<Symbol> written = written(accumulations);
+        if (written.contains(symbol)) {
+            return null;
+        }
+        written.add(symbol);
+        ASTExprNode bound = compare.m_rhs;
+        if (!isInvariant(bound, written)) {
+            return null;
+        }
+        ASTBlockStmtNode result = new ASTBlockStmtNode();
+        result.addStatement(init);
+        for (Accumulation accumulation : accumulations) {
+            ASTExprNode sum;
+            if (ASTUtils.isVariable(accumulation.m_value, symbol)) {
+                // i + (i + 1) + ... + (i + t - 1)
+                sum = new ASTPlusMinusExprNode(multiply(tripCount(induction, bound), variable(induction)),
+                        triangle(induction, bound), Token.Type.PLUS);
+            } else if (isInvariant(accumulation.m_value, written)) {
+                sum = multiply(tripCount(induction, bound), copy(accumulation.m_value));
+            } else {
+                return null;
+            }
+            result.addStatement(accumulate(accumulation, sum));
+        }
+        // the loop ends with i = b or leaves i as it was
+        result.addStatement(new ASTAssignStmtNode(new ASTPlusMinusExprNode(variable(induction),
+                tripCount(induction, bound), Token.Type.PLUS), symbol));
+        return result;
+    }
+
+    /**
+     * the statements of a loop body, null if it is no plain statement list
+     */
+    private static List<ASTStmtNode> statements(ASTStmtNode block) {
+        ArrayList<ASTStmtNode> result = new ArrayList<ASTStmtNode>();
+        if (!(block instanceof ASTBlockStmtNode)) {
+            return null;
+        }
+        for (ASTStmtNode statement : ((ASTBlockStmtNode) block).m_statements) {
+            if (statement instanceof ASTBlockStmtNode) {
+                List<ASTStmtNode> nested = statements(statement);
+                if (nested == null) {
+                    return null;
+                }
+                result.addAll(nested);
+            } else {
+                result.add(statement);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the accumulations of a body, null if it does anything else or
+     * assigns a variable twice
+     */
+    private static List<Accumulation> accumulations(List<ASTStmtNode> body) {
+        ArrayList<Accumulation> result = new ArrayList<Accumulation>();
+        HashSet<Symbol> written = new HashSet<Symbol>();
+        for (ASTStmtNode statement : body) {
+            Accumulation accumulation = accumulation(statement);
+            if (accumulation == null || !written.add(accumulation.m_symbol)) {
+                return null;
+            }
+            result.add(accumulation);
+        }
+        return result;
+    }
+
+    private static Accumulation accumulation(ASTStmtNode statement) {
+        if (!(statement instanceof ASTAssignStmtNode)
+                || !(((ASTAssignStmtNode) statement).getExpr() instanceof ASTPlusMinusExprNode)) {
+            return null;
+        }
+        ASTAssignStmtNode assign = (ASTAssignStmtNode) statement;
+        ASTPlusMinusExprNode expr = (ASTPlusMinusExprNode) assign.getExpr();
+        Accumulation result = new Accumulation();
+        result.m_symbol = assign.getSymbol();
+        result.m_subtract = expr.m_type == Token.Type.MINUS;
+        if (ASTUtils.isVariable(expr.m_lhs, result.m_symbol)) {
+            result.m_identifier = ((ASTVariableExprNode) expr.m_lhs).identifier;
+            result.m_value = expr.m_rhs;
+        } else if (!result.m_subtract && ASTUtils.isVariable(expr.m_rhs, result.m_symbol)) {
+            result.m_identifier = ((ASTVariableExprNode) expr.m_rhs).identifier;
+            result.m_value = expr.m_lhs;
+        } else {
+            return null;
+        }
+        return result;
+    }
+
+    private static HashSet<Symbol> written(List<Accumulation> accumulations) {
+        HashSet<Symbol> result = new HashSet<Symbol>();
+        for (Accumulation accumulation : accumulations) {
+            result.add(accumulation.m_symbol);
+        }
+        return result;
+    }
+
+    /**
+     * true for an expression without side effects and traps that reads
+     * none of the written variables
+     */
+    private static boolean isInvariant(ASTNode node, HashSet<Symbol> written) {
+        if (node instanceof ASTVariableExprNode) {
+            return !written.contains(((ASTVariableExprNode) node).getSymbol());
+        }
+        if (!(node instanceof ASTIntegerLiteralNode || node instanceof ASTPlusMinusExprNode
+                || node instanceof ASTParentheseExprNode
+                || node instanceof ASTMulDivExprNode && ((ASTMulDivExprNode) node).m_type == Token.Type.MUL)) {
+            return false;
+        }
+        for (ASTNode child : node.getChildren()) {
+            if (!isInvariant(child, written)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ASTExprNode copy(ASTExprNode node) {
+        return node.copy(new HashMap<Symbol, Symbol>());
+    }
+
+    private static ASTExprNode literal(int value) {
+        return new ASTIntegerLiteralNode(Integer.toString(value));
+    }
+
+    private static ASTExprNode variable(Accumulation accumulation) {
+        return new ASTVariableExprNode(accumulation.m_identifier, accumulation.m_symbol);
+    }
+
+    private static ASTExprNode multiply(ASTExprNode lhs, ASTExprNode rhs) {
+        return new ASTMulDivExprNode(lhs, rhs, Token.Type.MUL);
+    }
+
+    private static ASTStmtNode accumulate(Accumulation accumulation, ASTExprNode value) {
+        return new ASTAssignStmtNode(new ASTPlusMinusExprNode(variable(accumulation), value,
+                accumulation.m_subtract ? Token.Type.MINUS : Token.Type.PLUS), accumulation.m_symbol);
+    }
+
+    /**
+     * i < b ? b - i : 0, b - i is the exact count modulo 2^32 even where
+     * it does not fit into an int
+     */
+    private static ASTExprNode tripCount(Accumulation induction, ASTExprNode bound) {
+        return new ASTQuestionmarkExprNode(
+                new ASTCompareExprNode(variable(induction), copy(bound), Token.Type.LESS),
+                new ASTPlusMinusExprNode(copy(bound), variable(induction), Token.Type.MINUS),
+                literal(0));
+    }
+
+    /**
+     * the unsigned value x / 2, shifting right keeps the sign bit
+     */
+    private static ASTExprNode half(ASTExprNode value) {
+        return new ASTBitAndOrExprNode(new ASTShiftExprNode(value, literal(1), Token.Type.SHIFTRIGHT),
+                literal(Integer.MAX_VALUE), Token.Type.BITAND);
+    }
+
+    /**
+     * t * (t - 1) / 2 modulo 2^32, the even factor is halved first so
+     * that no bit of the product is lost
+     */
+    private static ASTExprNode triangle(Accumulation induction, ASTExprNode bound) {
+        ASTExprNode even = new ASTCompareExprNode(
+                new ASTBitAndOrExprNode(tripCount(induction, bound), literal(1), Token.Type.BITAND),
+                literal(0), Token.Type.EQUAL);
+        ASTExprNode evenCase = multiply(half(tripCount(induction, bound)),
+                new ASTPlusMinusExprNode(tripCount(induction, bound), literal(1), Token.Type.MINUS));
+        ASTExprNode oddCase = multiply(tripCount(induction, bound),
+                half(new ASTPlusMinusExprNode(tripCount(induction, bound), literal(1), Token.Type.MINUS)));
+        return new ASTQuestionmarkExprNode(even, evenCase, oddCase);
+    }
+}
@@ -0,0 +1,146 @@
+package compiler.ast;
+
+import compiler.CompileEnv;
+import compiler.Instr;
+import compiler.InstrBlock;
+import compiler.Symbol;
+
+/**
+ * Unrolls loops with a trip count known at compile time, EXECUTE n TIMES
+ * with a literal n and FOR loops counting a variable from a literal to a
+ * literal bound. A loop is unrolled completely if all its iterations fit
+ * into maxNodes AST nodes, otherwise factor iterations make up one round
+ * of a loop that is counted down and the remaining iterations follow it.
+ * The loop nodes generate the copies themselves, this pass only decides
+ * how many of them.
+ */
+public class LoopUnroller {
+    private int m_factor;
+    private int m_maxNodes;
+
+    public int m_fullyUnrolled;
+    public int m_partiallyUnrolled;
+
+    /**
+     * generates the code of one iteration
+     */
+    interface Iteration {
+        void codegen(CompileEnv env) throws Exception;
+    }
+
+    public LoopUnroller(int factor, int maxNodes) {
+        m_factor = factor;
+        m_maxNodes = maxNodes;
+    }
+
+    public void run(ASTNode root) {
+        visit(root);
+    }
+
+    private void visit(ASTNode node) {
+        for (ASTNode child : node.getChildren()) {
+            visit(child);
+        }
+        if (node instanceof ASTExecuteNTimesNode) {
+            ASTExecuteNTimesNode loop = (ASTExecuteNTimesNode) node;
+            if (ConstantFolder.isConst(loop.m_n)) {
+                loop.setUnroll(copies(Math.max(0, loop.m_n.eval()), ASTUtils.size(loop.m_block)));
+            }
+        } else if (node instanceof ASTForNode) {
+            ASTForNode loop = (ASTForNode) node;
+            long tripCount = tripCount(loop);
+            if (tripCount >= 0) {
+                loop.setUnroll((int) tripCount,
+                        copies((int) tripCount, ASTUtils.size(loop.getBody()) + ASTUtils.size(loop.getStep())));
+            }
+        }
+    }
+
+    /**
+     * iterations per round for a loop body of size nodes, -1 keeps the loop
+     */
+    private int copies(int tripCount, int size) {
+        if ((long) tripCount * size <= m_maxNodes) {
+            m_fullyUnrolled++;
+            return tripCount;
+        }
+        if (m_factor > 1 && (long) m_factor * size <= m_maxNodes) {
+            m_partiallyUnrolled++;
+            return m_factor;
+        }
+        return -1;
+    }
+
+    private static Integer constant(ASTExprNode node) {
+        return ConstantFolder.isConst(node) ? node.eval() : null;
+    }
+
+    /**
+     * number of iterations of FOR (v = a; v < b; v = v + c;) with literals
+     * a, b and c > 0 or the same with > and c < 0, -1 for all other loops
+     */
+    private static long tripCount(ASTForNode loop) {
+        if (!(loop.getInit() instanceof ASTAssignStmtNode) || !(loop.getStep() instanceof ASTAssignStmtNode)
+                || !(loop.getCondition() instanceof ASTCompareExprNode)) {
+            return -1;
+        }
+        ASTAssignStmtNode init = (ASTAssignStmtNode) loop.getInit();
+        ASTAssignStmtNode step = (ASTAssignStmtNode) loop.getStep();
+        ASTCompareExprNode cond = (ASTCompareExprNode) loop.getCondition();
+        Symbol symbol = init.getSymbol();
+        if (step.getSymbol() != symbol || !(step.getExpr() instanceof ASTPlusMinusExprNode)
+                || !ASTUtils.isVariable(cond.m_lhs, symbol) || ASTUtils.writes(loop.getBody(), symbol)) {
+            return -1;
+        }
+        ASTPlusMinusExprNode increment = (ASTPlusMinusExprNode) step.getExpr();
+        Integer start = constant(init.getExpr());
+        Integer bound = constant(cond.m_rhs);
+        Integer stride = constant(increment.m_rhs);
+        if (start == null || bound == null || stride == null || !ASTUtils.isVariable(increment.m_lhs, symbol)) {
+            return -1;
+        }
+        long delta = increment.m_type == compiler.Token.Type.PLUS ? (long) stride : -(long) stride;
+        long distance;
+        if (cond.m_type == compiler.Token.Type.LESS && delta > 0) {
+            distance = (long) bound - start;
+        } else if (cond.m_type == compiler.Token.Type.GREATER && delta < 0) {
+            distance = (long) start - bound;
+        } else {
+            return -1;
+        }
+        long tripCount = distance <= 0 ? 0 : (distance + Math.abs(delta) - 1) / Math.abs(delta);
+        // the last step must not wrap around, the loop would go on then
+        long end = start + tripCount * delta;
+        if (end < Integer.MIN_VALUE || end > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return tripCount;
+    }
+
+    /**
+     * code of tripCount iterations with copies iterations per round of a
+     * loop, all of them one after the other if copies is not less than
+     * tripCount, continues in the current block
+     */
+    static void codegen(CompileEnv env, Iteration iteration, int tripCount, int copies, String name)
+            throws Exception {
+        int rounds = copies >= tripCount ? 0 : tripCount / copies;
+        if (rounds > 0) {
+            InstrBlock body = env.createBlock(name + "_body");
+            InstrBlock exit = env.createBlock(name + "_exit");
+            String counterName = "$" + name;
+            int counterSlot = env.getCurrentFunction().allocSlot();
+            env.addInstr(new Instr.LocalAssignInstr(new Instr.IntegerLiteralInstr(rounds), counterName, counterSlot));
+            env.addInstr(new Instr.JumpInstr(body));
+            env.setCurrentBlock(body);
+            for (int i = 0; i < copies; i++) {
+                iteration.codegen(env);
+            }
+            env.addInstr(new Instr.CountDownInstr(counterName, counterSlot, body, exit));
+            env.setCurrentBlock(exit);
+        }
+        for (int i = rounds * copies; i < tripCount; i++) {
+            iteration.codegen(env);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package compiler.ast;
+
+import java.util.HashSet;
+import java.util.List;
+
+import compiler.CompileEnv;
+import compiler.Instr;
+import compiler.InstrBlock;
+import compiler.Symbol;
+
+/**
+ * Moves IF statements out of WHILE, FOR and EXECUTE n TIMES loops if the
+ * loop does not change their condition. The condition is tested once in
+ * front of the loop, which is generated twice, once with only the THEN
+ * branch of the IF and once with only its ELSE branch. As that doubles
+ * the loop, only loops of at most maxNodes AST nodes are unswitched and
+ * each of them on a single IF. Like with the LoopUnroller the loop nodes
+ * generate the versions themselves, this pass only selects the IF.
+ */
+public class LoopUnswitcher {
+    private int m_maxNodes;
+    // IF statements some loop is unswitched on already
+    private HashSet<ASTIfNode> m_claimed;
+
+    public int m_unswitchedLoops;
+
+    public LoopUnswitcher(int maxNodes) {
+        m_maxNodes = maxNodes;
+        m_claimed = new HashSet<ASTIfNode>();
+    }
+
+    public void run(ASTNode root) {
+        visit(root);
+    }
+
+    private void visit(ASTNode node) {
+        // outer loops first, they test the condition less often
+        if (node instanceof ASTWhileStmtNode) {
+            ASTWhileStmtNode loop = (ASTWhileStmtNode) node;
+            ASTIfNode test = select(loop, List.of(loop.getCondition(), loop.getBody()));
+            if (test != null) {
+                loop.setUnswitch(test);
+            }
+        } else if (node instanceof ASTForNode) {
+            ASTForNode loop = (ASTForNode) node;
+            // tested after the init statement
+            ASTIfNode test = select(loop, List.of(loop.getCondition(), loop.getBody(), loop.getStep()));
+            if (test != null) {
+                loop.setUnswitch(test);
+            }
+        } else if (node instanceof ASTExecuteNTimesNode) {
+            ASTExecuteNTimesNode loop = (ASTExecuteNTimesNode) node;
+            // tested before n is evaluated
+            ASTIfNode test = select(loop, List.of(loop.m_n, loop.m_block));
+            if (test != null) {
+                loop.setUnswitch(test);
+            }
+        }
+        for (ASTNode child : node.getChildren()) {
+            visit(child);
+        }
+    }
+
+    /**
+     * the first IF in the loop whose condition none of the nodes executed
+     * by the loop changes, null if there is none or the loop is too large
+     */
+    private ASTIfNode select(ASTNode loop, List<ASTNode> executed) {
+        if (ASTUtils.size(loop) > m_maxNodes) {
+            return null;
+        }
+        for (ASTNode node : executed) {
+            ASTIfNode test = find(node, executed);
+            if (test != null) {
+                m_claimed.add(test);
+                test.setUnswitched();
+                m_unswitchedLoops++;
+                return test;
+            }
+        }
+        return null;
+    }
+
+    private ASTIfNode find(ASTNode node, List<ASTNode> executed) {
+        if (node instanceof ASTIfNode && !m_claimed.contains(node)
+                && isInvariant(((ASTIfNode) node).getCondition(), executed)) {
+            return (ASTIfNode) node;
+        }
+        for (ASTNode child : node.getChildren()) {
+            ASTIfNode test = find(child, executed);
+            if (test != null) {
+                return test;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * true if the condition can be evaluated before the loop, it must
+     * neither have side effects nor trap and read no variable the loop
+     * changes
+     */
+    private static boolean isInvariant(ASTNode node, List<ASTNode> executed) {
+        return ASTUtils.isSafe(node) && !readsChanged(node, executed);
+    }
+
+    private static boolean readsChanged(ASTNode node, List<ASTNode> executed) {
+        if (node instanceof ASTVariableExprNode) {
+            Symbol symbol = ((ASTVariableExprNode) node).getSymbol();
+            for (ASTNode loopNode : executed) {
+                if (ASTUtils.writes(loopNode, symbol)) {
+                    return true;
+                }
+            }
+        }
+        for (ASTNode child : node.getChildren()) {
+            if (readsChanged(child, executed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * tests the condition of the IF and continues in a version of the loop
+     * for either outcome, continues in the current block
+     */
+    static void codegen(CompileEnv env, ASTIfNode test, LoopUnroller.Iteration loop, String name) throws Exception {
+        InstrBlock thenLoop = env.createBlock(name + "_then");
+        InstrBlock elseLoop = env.createBlock(name + "_else");
+        InstrBlock exit = env.createBlock(name + "_exit");
+        test.getCondition().condCodegen(env, thenLoop, elseLoop);
+        env.setCurrentBlock(thenLoop);
+        test.assume(true);
+        loop.codegen(env);
+        env.addInstr(new Instr.JumpInstr(exit));
+        env.setCurrentBlock(elseLoop);
+        test.assume(false);
+        loop.codegen(env);
+        env.addInstr(new Instr.JumpInstr(exit));
+        test.assume(null);
+        env.setCurrentBlock(exit);
+    }
+}